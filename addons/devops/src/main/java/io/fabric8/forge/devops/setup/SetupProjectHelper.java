@@ -19,16 +19,16 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import io.fabric8.forge.addon.utils.EffectiveModelCache;
 import org.jboss.forge.addon.dependencies.Dependency;
 import org.jboss.forge.addon.projects.Project;
-import org.jboss.forge.addon.projects.facets.DependencyFacet;
 
 public class SetupProjectHelper {
 
     public static Set<Dependency> findCamelArtifacts(Project project) {
         Set<Dependency> answer = new LinkedHashSet<Dependency>();
 
-        List<Dependency> dependencies = project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        List<Dependency> dependencies = EffectiveModelCache.getEffectiveDependencies(project);
         for (Dependency d : dependencies) {
             if ("org.apache.camel".equals(d.getCoordinate().getGroupId())) {
                 answer.add(d);
@@ -21,7 +21,6 @@ import java.util.Set;
 
 import org.jboss.forge.addon.dependencies.Dependency;
 import org.jboss.forge.addon.projects.Project;
-import org.jboss.forge.addon.projects.facets.DependencyFacet;
 
 public class CamelProjectHelper {
 
@@ -42,7 +41,7 @@ public class CamelProjectHelper {
     }
 
     public static Dependency findCamelArtifactDependency(Project project, String artifactId) {
-        List<Dependency> dependencies = project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        List<Dependency> dependencies = EffectiveModelCache.getEffectiveDependencies(project);
         for (Dependency d : dependencies) {
             if ("org.apache.camel".equals(d.getCoordinate().getGroupId()) && artifactId.equals(d.getCoordinate().getArtifactId())) {
                 return d;
@@ -54,7 +53,7 @@ public class CamelProjectHelper {
     public static Set<Dependency> findCamelArtifacts(Project project) {
         Set<Dependency> answer = new LinkedHashSet<Dependency>();
 
-        List<Dependency> dependencies = project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        List<Dependency> dependencies = EffectiveModelCache.getEffectiveDependencies(project);
         for (Dependency d : dependencies) {
             if ("org.apache.camel".equals(d.getCoordinate().getGroupId())) {
                 answer.add(d);
@@ -68,7 +67,7 @@ public class CamelProjectHelper {
     }
 
     public static boolean hasDependency(Project project, String groupId, String artifactId, String version) {
-        List<Dependency> dependencies = project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        List<Dependency> dependencies = EffectiveModelCache.getEffectiveDependencies(project);
         for (Dependency d : dependencies) {
             if (d.getCoordinate().getGroupId().equals(groupId) && d.getCoordinate().getArtifactId().equals(artifactId)) {
                 if (version == null || d.getCoordinate().getVersion().equals(version)) {
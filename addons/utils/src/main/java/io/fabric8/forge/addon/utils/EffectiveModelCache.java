@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.addon.utils;
+
+import io.fabric8.utils.Systems;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.jboss.forge.addon.dependencies.Dependency;
+import org.jboss.forge.addon.projects.Project;
+import org.jboss.forge.addon.projects.facets.DependencyFacet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the effective dependencies and managed dependencies of projects; as resolving the effective maven model is
+ * slow and the Camel commands and completers ask for it many times per request.
+ * <p/>
+ * The cached values of a project are keyed by the SHA-256 of the pom.xml files of the project and its parents on
+ * disk; so they are resolved again as soon as any of those poms is written.
+ */
+public class EffectiveModelCache {
+    private static final int MAX_PARENTS = 20;
+
+    protected static int maxProjects = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_EFFECTIVE_MODEL_CACHE_SIZE", "100"));
+
+    private static final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxProjects;
+        }
+    };
+
+    private static transient Logger LOG;
+
+    /**
+     * Returns the effective dependencies of the project
+     */
+    public static List<Dependency> getEffectiveDependencies(Project project) {
+        Entry entry = getEntry(project);
+        if (entry == null) {
+            return project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        }
+        synchronized (entry) {
+            if (entry.dependencies == null) {
+                entry.dependencies = Collections.unmodifiableList(new ArrayList<>(project.getFacet(DependencyFacet.class).getEffectiveDependencies()));
+            }
+            return entry.dependencies;
+        }
+    }
+
+    /**
+     * Returns the effective managed dependencies of the project
+     */
+    public static List<Dependency> getEffectiveManagedDependencies(Project project) {
+        Entry entry = getEntry(project);
+        if (entry == null) {
+            return project.getFacet(DependencyFacet.class).getEffectiveManagedDependencies();
+        }
+        synchronized (entry) {
+            if (entry.managedDependencies == null) {
+                entry.managedDependencies = Collections.unmodifiableList(new ArrayList<>(project.getFacet(DependencyFacet.class).getEffectiveManagedDependencies()));
+            }
+            return entry.managedDependencies;
+        }
+    }
+
+    /**
+     * Removes the cached values of the project
+     */
+    public static void invalidate(Project project) {
+        File folder = getProjectFolder(project);
+        if (folder != null) {
+            synchronized (cache) {
+                cache.remove(folder.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Returns the cache entry for the current poms of the project or null if the poms could not be read
+     */
+    protected static Entry getEntry(Project project) {
+        File folder = getProjectFolder(project);
+        if (folder == null || maxProjects <= 0) {
+            return null;
+        }
+        String hash;
+        try {
+            hash = hashPomChain(new File(folder, "pom.xml"));
+        } catch (Exception e) {
+            getLOG().debug("Failed to hash the poms of " + folder + ". " + e, e);
+            return null;
+        }
+        String key = folder.getAbsolutePath();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry == null || !entry.hash.equals(hash)) {
+                entry = new Entry(hash);
+                cache.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    protected static File getProjectFolder(Project project) {
+        if (project == null || project.getRoot() == null) {
+            return null;
+        }
+        String path = project.getRoot().getFullyQualifiedName();
+        return path != null ? new File(path) : null;
+    }
+
+    /**
+     * Returns the SHA-256 of the pom and of the parent poms it refers to which can be found on disk
+     */
+    public static String hashPomChain(File pom) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("No SHA-256 digest available: " + e, e);
+        }
+        File file = pom.getCanonicalFile();
+        for (int i = 0; i < MAX_PARENTS && file.isFile(); i++) {
+            byte[] data = Files.readAllBytes(file.toPath());
+            digest.update(file.getPath().getBytes("UTF-8"));
+            digest.update(data);
+            File parent = findParentPom(file);
+            if (parent == null) {
+                break;
+            }
+            file = parent.getCanonicalFile();
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the parent pom file of the pom or null if it has no parent
+     */
+    protected static File findParentPom(File pom) throws IOException {
+        Model model;
+        try (InputStream in = new FileInputStream(pom)) {
+            model = new MavenXpp3Reader().read(in);
+        } catch (Exception e) {
+            throw new IOException("Failed to parse " + pom + ". " + e, e);
+        }
+        Parent parent = model.getParent();
+        if (parent == null) {
+            return null;
+        }
+        String relativePath = parent.getRelativePath();
+        if (relativePath == null || relativePath.trim().isEmpty()) {
+            return null;
+        }
+        File answer = new File(pom.getParentFile(), relativePath.trim());
+        if (answer.isDirectory()) {
+            answer = new File(answer, "pom.xml");
+        }
+        return answer;
+    }
+
+    private static Logger getLOG() {
+        if (LOG == null) {
+            LOG = LoggerFactory.getLogger(EffectiveModelCache.class);
+        }
+        return LOG;
+    }
+
+    private static class Entry {
+        private final String hash;
+        private List<Dependency> dependencies;
+        private List<Dependency> managedDependencies;
+
+        public Entry(String hash) {
+            this.hash = hash;
+        }
+    }
+}
@@ -32,7 +32,6 @@ import org.jboss.forge.addon.maven.plugins.MavenPlugin;
 import org.jboss.forge.addon.maven.projects.MavenPluginFacet;
 import org.jboss.forge.addon.projects.Project;
 import org.jboss.forge.addon.projects.dependencies.DependencyInstaller;
-import org.jboss.forge.addon.projects.facets.DependencyFacet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -117,7 +116,7 @@ public class MavenHelpers {
      * Returns true if the dependency was added or false if its already there
      */
     public static boolean ensureMavenDependencyAdded(Project project, DependencyInstaller dependencyInstaller, String groupId, String artifactId, String scope) {
-        List<Dependency> dependencies = project.getFacet(DependencyFacet.class).getEffectiveDependencies();
+        List<Dependency> dependencies = EffectiveModelCache.getEffectiveDependencies(project);
         for (Dependency d : dependencies) {
             if (groupId.equals(d.getCoordinate().getGroupId()) && artifactId.equals(d.getCoordinate().getArtifactId())) {
                 getLOG().debug("Project already includes:  " + groupId + ":" + artifactId + " for version: " + d.getCoordinate().getVersion());
@@ -138,6 +137,7 @@ public class MavenHelpers {
             getLOG().debug("No version could be found for:  " + groupId + ":" + artifactId);
         }
         dependencyInstaller.install(project, component);
+        EffectiveModelCache.invalidate(project);
         return true;
     }
 
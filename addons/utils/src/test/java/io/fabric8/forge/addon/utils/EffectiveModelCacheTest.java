@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.addon.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ */
+public class EffectiveModelCacheTest {
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("effectiveModelCacheTest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        io.fabric8.utils.Files.recursiveDelete(folder);
+    }
+
+    @Test
+    public void testHashChangesWhenParentPomChanges() throws Exception {
+        File parentPom = writePom(new File(folder, "pom.xml"), "parent", null, "");
+        File childPom = writePom(new File(folder, "child/pom.xml"), "child", "parent", "");
+
+        String hash = EffectiveModelCache.hashPomChain(childPom);
+        assertEquals(hash, EffectiveModelCache.hashPomChain(childPom));
+
+        writePom(parentPom, "parent", null, "<properties><camel.version>2.16.1</camel.version></properties>");
+        assertNotEquals(hash, EffectiveModelCache.hashPomChain(childPom));
+    }
+
+    @Test
+    public void testHashIgnoresPomsOutsideTheParentChain() throws Exception {
+        File otherPom = writePom(new File(folder, "pom.xml"), "other", null, "");
+        File pom = writePom(new File(folder, "project/pom.xml"), "project", null, "");
+
+        String hash = EffectiveModelCache.hashPomChain(pom);
+        writePom(otherPom, "other", null, "<properties><changed>true</changed></properties>");
+        assertEquals(hash, EffectiveModelCache.hashPomChain(pom));
+    }
+
+    protected static File writePom(File file, String artifactId, String parentArtifactId, String extra) throws IOException {
+        file.getParentFile().mkdirs();
+        StringBuilder builder = new StringBuilder();
+        builder.append("<project><modelVersion>4.0.0</modelVersion>");
+        if (parentArtifactId != null) {
+            builder.append("<parent><groupId>org.example</groupId><artifactId>").append(parentArtifactId)
+                    .append("</artifactId><version>1.0</version></parent>");
+        }
+        builder.append("<groupId>org.example</groupId><artifactId>").append(artifactId)
+                .append("</artifactId><version>1.0</version>").append(extra).append("</project>");
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.benchmarks;
+
+import io.fabric8.forge.rest.git.ObjectDatabaseCommitter;
+import io.fabric8.utils.Files;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a number of local git repositories to benchmark against.
+ * <p/>
+ * Each repository is created as a bare repository which acts as the <code>file://</code> remote plus a clone of it,
+ * laid out the same way as the clones which forge keeps under its <code>PROJECT_FOLDER</code>. The contents are
+ * generated from a fixed seed so that runs are comparable.
+ */
+public class GitRepositoryFixture {
+    private static final transient Logger LOG = LoggerFactory.getLogger(GitRepositoryFixture.class);
+    public static final String BRANCH = "master";
+    public static final String USER = "benchmark";
+    private static final int FILES_PER_FOLDER = 10;
+    private static final int MAX_FILES_PER_COMMIT = 3;
+
+    private final File rootFolder;
+    private final int commitCount;
+    private final int fileCount;
+    private final int linesPerFile;
+    private final List<File> remoteFolders = new ArrayList<>();
+    private final List<File> cloneFolders = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+
+    public GitRepositoryFixture(File rootFolder, int commitCount, int fileCount, int linesPerFile) {
+        this.rootFolder = rootFolder;
+        this.commitCount = Math.max(1, commitCount);
+        this.fileCount = Math.max(1, fileCount);
+        this.linesPerFile = Math.max(1, linesPerFile);
+        for (int i = 0; i < this.fileCount; i++) {
+            paths.add("src/main/java/io/fabric8/sample/p" + (i / FILES_PER_FOLDER) + "/Sample" + i + ".java");
+        }
+    }
+
+    /**
+     * Creates a fixture of the given number of repositories in a new temporary folder
+     */
+    public static GitRepositoryFixture create(int repositoryCount, int commitCount, int fileCount, int linesPerFile) throws Exception {
+        File rootFolder = java.nio.file.Files.createTempDirectory("fabric8-forge-benchmark").toFile();
+        GitRepositoryFixture answer = new GitRepositoryFixture(rootFolder, commitCount, fileCount, linesPerFile);
+        for (int i = 0; i < repositoryCount; i++) {
+            answer.createRepository("repo" + i, i);
+        }
+        return answer;
+    }
+
+    /**
+     * Creates a bare remote repository with the generated history and clones it
+     */
+    public File createRepository(String name, long seed) throws Exception {
+        long start = System.currentTimeMillis();
+        File remoteFolder = new File(rootFolder, "remotes/" + name + ".git");
+        File cloneFolder = new File(rootFolder, "clones/" + name);
+        Git remote = Git.init().setBare(true).setDirectory(remoteFolder).call();
+        try {
+            generateHistory(remote.getRepository(), new Random(seed));
+        } finally {
+            remote.close();
+        }
+        Git clone = Git.cloneRepository().setURI(getCloneUrl(remoteFolder)).setDirectory(cloneFolder).setBranch(BRANCH).call();
+        clone.close();
+        remoteFolders.add(remoteFolder);
+        cloneFolders.add(cloneFolder);
+        LOG.info("Generated " + name + " with " + commitCount + " commits of " + fileCount + " files in " + (System.currentTimeMillis() - start) + " millis");
+        return cloneFolder;
+    }
+
+    protected void generateHistory(Repository repository, Random random) throws Exception {
+        ObjectDatabaseCommitter committer = new ObjectDatabaseCommitter(repository);
+        Map<String, String[]> contents = new HashMap<>();
+        Map<String, byte[]> changes = new HashMap<>();
+        for (String path : paths) {
+            String[] lines = new String[linesPerFile];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = generateLine(random, i);
+            }
+            contents.put(path, lines);
+            changes.put(path, toBytes(lines));
+        }
+        RevCommit commit = committer.commitFiles(BRANCH, null, changes, createPerson(0), "Initial import", null);
+        for (int i = 1; i < commitCount; i++) {
+            changes.clear();
+            int files = 1 + random.nextInt(MAX_FILES_PER_COMMIT);
+            for (int j = 0; j < files; j++) {
+                String path = paths.get(random.nextInt(paths.size()));
+                String[] lines = contents.get(path);
+                int line = random.nextInt(lines.length);
+                lines[line] = generateLine(random, line);
+                changes.put(path, toBytes(lines));
+            }
+            commit = committer.commitFiles(BRANCH, null, changes, createPerson(i), "Change " + i, commit);
+        }
+    }
+
+    /**
+     * Packs the objects of all the clones like a long lived clone which has been garbage collected
+     */
+    public void repack() throws Exception {
+        for (File cloneFolder : cloneFolders) {
+            Git git = Git.open(cloneFolder);
+            try {
+                git.gc().call();
+            } finally {
+                git.close();
+            }
+        }
+    }
+
+    public void delete() {
+        Files.recursiveDelete(rootFolder);
+    }
+
+    public File getRootFolder() {
+        return rootFolder;
+    }
+
+    public List<File> getRemoteFolders() {
+        return remoteFolders;
+    }
+
+    public List<File> getCloneFolders() {
+        return cloneFolders;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    public static String getCloneUrl(File remoteFolder) {
+        return "file://" + remoteFolder.getAbsolutePath();
+    }
+
+    protected PersonIdent createPerson(int commit) {
+        // lets space out the commits by a minute each so that history looks like real history
+        return new PersonIdent(USER, USER + "@fabric8.io", 1420070400000L + commit * 60000L, 0);
+    }
+
+    protected static String generateLine(Random random, int line) {
+        return "    // line " + line + " value " + Long.toHexString(random.nextLong());
+    }
+
+    protected static byte[] toBytes(String[] lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
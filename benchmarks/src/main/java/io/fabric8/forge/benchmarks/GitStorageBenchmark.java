@@ -0,0 +1,166 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.benchmarks;
+
+import io.fabric8.forge.rest.main.GitStorageProfile;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.MaxCountRevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JGit storage profiles when reading from many packed repositories, which is what a long running forge
+ * pod does once its cached clones have been garbage collected.
+ * <p/>
+ * Run with a JVM heap close to the pod memory limit, e.g.
+ * <code>java -Xmx512m -jar target/benchmarks.jar GitStorageBenchmark -p mmap=false,true</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GitStorageBenchmark {
+    private static final int HISTORY_LIMIT = 50;
+
+    @Param({"20"})
+    public int repositories;
+
+    @Param({"500"})
+    public int commits;
+
+    @Param({"200"})
+    public int files;
+
+    @Param({"10m", "64m"})
+    public String packedGitLimit;
+
+    @Param({"8k", "64k"})
+    public String packedGitWindowSize;
+
+    @Param({"10m", "32m"})
+    public String deltaBaseCacheLimit;
+
+    @Param({"false"})
+    public boolean mmap;
+
+    private GitRepositoryFixture fixture;
+    private List<Repository> repositoryList = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = GitRepositoryFixture.create(repositories, commits, files, 100);
+        fixture.repack();
+        new GitStorageProfile(GitStorageProfile.parseSize(packedGitLimit), (int) GitStorageProfile.parseSize(packedGitWindowSize),
+                128, mmap, (int) GitStorageProfile.parseSize(deltaBaseCacheLimit), (int) GitStorageProfile.parseSize("50m")).install();
+        for (File cloneFolder : fixture.getCloneFolders()) {
+            repositoryList.add(new FileRepositoryBuilder().setGitDir(new File(cloneFolder, ".git")).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Repository repository : repositoryList) {
+            repository.close();
+        }
+        repositoryList.clear();
+        if (fixture != null) {
+            fixture.delete();
+        }
+    }
+
+    /**
+     * Reads every blob at the head of a random repository, like listing and loading a project
+     */
+    @Benchmark
+    public long readHeadBlobs() throws IOException {
+        Repository repository = randomRepository();
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk revWalk = new RevWalk(reader);
+        TreeWalk treeWalk = new TreeWalk(reader);
+        try {
+            RevCommit head = revWalk.parseCommit(repository.resolve(Constants.HEAD));
+            treeWalk.addTree(head.getTree());
+            treeWalk.setRecursive(true);
+            long size = 0;
+            while (treeWalk.next()) {
+                size += reader.open(treeWalk.getObjectId(0)).getBytes().length;
+            }
+            return size;
+        } finally {
+            treeWalk.close();
+            revWalk.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Walks the recent history of a random file of a random repository, which inflates many deltified trees
+     */
+    @Benchmark
+    public int walkFileHistory() throws IOException {
+        Repository repository = randomRepository();
+        List<String> paths = fixture.getPaths();
+        String path = paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+        RevWalk revWalk = new RevWalk(repository);
+        try {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            revWalk.markStart(revWalk.parseCommit(head));
+            revWalk.setTreeFilter(AndTreeFilter.create(PathFilter.create(path), TreeFilter.ANY_DIFF));
+            revWalk.setRevFilter(MaxCountRevFilter.create(HISTORY_LIMIT));
+            int count = 0;
+            for (RevCommit commit : revWalk) {
+                count++;
+            }
+            return count;
+        } finally {
+            revWalk.close();
+        }
+    }
+
+    protected Repository randomRepository() {
+        return repositoryList.get(ThreadLocalRandom.current().nextInt(repositoryList.size()));
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.benchmarks.load;
+
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import io.fabric8.forge.rest.git.BranchWorkTrees;
+import io.fabric8.forge.rest.git.GitLockManager;
+import io.fabric8.forge.rest.git.GitOperationExecutor;
+import io.fabric8.forge.rest.git.RepositoriesResource;
+import io.fabric8.forge.rest.git.RepositoryEvents;
+import io.fabric8.forge.rest.main.GitUserHelper;
+import io.fabric8.forge.rest.main.ProjectFileSystem;
+import io.fabric8.forge.rest.main.RepositoryCache;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.repo.git.RepositoryDTO;
+import org.apache.cxf.endpoint.Server;
+import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boots the git REST resources in process on an embedded CXF server.
+ * <p/>
+ * Gogs is replaced by a {@link RepositoryCache} which is populated up front with the <code>file://</code> clone URLs
+ * of local bare repositories; so the {@link io.fabric8.repo.git.GitRepoClient} is never asked to list repositories.
+ * The {@link KubernetesClient} is a stub which fails on any use, as only the user repository endpoints are driven.
+ */
+public class InProcessForgeServer {
+    private static final transient Logger LOG = LoggerFactory.getLogger(InProcessForgeServer.class);
+
+    private final File projectFolder;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final int gitThreads;
+    private final boolean virtualThreads;
+    private Server server;
+    private GitOperationExecutor executor;
+
+    public InProcessForgeServer(File projectFolder, int port, String user, String password, int gitThreads, boolean virtualThreads) {
+        this.projectFolder = projectFolder;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.gitThreads = gitThreads;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void start(List<RepositoryDTO> repositories) {
+        RepositoryCache repositoryCache = new RepositoryCache();
+        repositoryCache.updateUserRepositories(repositories);
+        ProjectFileSystem projectFileSystem = new ProjectFileSystem(repositoryCache, projectFolder.getAbsolutePath(), "origin", null);
+        GitLockManager lockManager = new GitLockManager();
+        BranchWorkTrees workTrees = new BranchWorkTrees(projectFileSystem, lockManager, true, 30);
+        String gogsUrl = "http://localhost:" + port + "/";
+        GitUserHelper gitUserHelper = new GitUserHelper(gogsUrl, gogsUrl, user, password);
+        executor = new GitOperationExecutor(gitThreads, gitThreads * 10, gitThreads * 10, 300, virtualThreads, 5000);
+        RepositoriesResource repositoriesResource = new RepositoriesResource(gitUserHelper, repositoryCache, projectFileSystem, lockManager, createKubernetesStub(), workTrees, executor, new RepositoryEvents(0));
+
+        JAXRSServerFactoryBean factory = new JAXRSServerFactoryBean();
+        factory.setAddress(getBaseUrl());
+        factory.setServiceBeans(Arrays.<Object>asList(repositoriesResource));
+        factory.setProvider(new JacksonJsonProvider());
+        server = factory.create();
+        LOG.info("Started forge git REST resources at " + getBaseUrl() + " using project folder " + projectFolder);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop();
+            server.destroy();
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    protected static KubernetesClient createKubernetesStub() {
+        return (KubernetesClient) Proxy.newProxyInstance(InProcessForgeServer.class.getClassLoader(), new Class<?>[]{KubernetesClient.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("toString")) {
+                    return "KubernetesClientStub";
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("close")) {
+                    return null;
+                }
+                throw new UnsupportedOperationException("KubernetesClient." + name + "() is not available in the load test");
+            }
+        });
+    }
+}
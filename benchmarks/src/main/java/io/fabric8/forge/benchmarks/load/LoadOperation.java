@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.benchmarks.load;
+
+/**
+ * The kinds of request a simulated user performs; the names are used in the <code>LOAD_MIX</code> configuration
+ */
+public enum LoadOperation {
+    content("GET content/{path}"),
+    listing("GET content/{folder}"),
+    history("GET history"),
+    diff("GET diff/{commit}"),
+    commitTree("GET commitTree/{commit}"),
+    write("POST content/{path}"),
+    commit("POST commit/{path}"),
+    command("POST command/execute/{name}");
+
+    private final String description;
+
+    LoadOperation(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
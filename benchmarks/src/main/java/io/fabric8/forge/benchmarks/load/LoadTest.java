@@ -0,0 +1,379 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.benchmarks.load;
+
+import io.fabric8.forge.benchmarks.GitRepositoryFixture;
+import io.fabric8.repo.git.RepositoryDTO;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a configurable mix of requests from many simulated users against the forge REST API and reports the
+ * latency percentiles and throughput of each endpoint.
+ * <p/>
+ * By default the git REST resources are booted in process via {@link InProcessForgeServer} against generated local
+ * repositories. If <code>LOAD_URL</code> is set the requests go to that server instead; which is required to include
+ * <code>command</code> executions as they need the Forge addons. The configuration uses environment variables or
+ * system properties:
+ * <ul>
+ * <li><code>LOAD_USERS</code> the number of concurrent simulated users (default 50)</li>
+ * <li><code>LOAD_DURATION_SECONDS</code> how long to run for after the warm up (default 60)</li>
+ * <li><code>LOAD_WARMUP_SECONDS</code> how long to warm up for before recording (default 10)</li>
+ * <li><code>LOAD_THINK_MILLIS</code> the pause between the requests of each user (default 0)</li>
+ * <li><code>LOAD_MIX</code> the relative weight of each {@link LoadOperation}
+ * (default <code>content=40,listing=10,history=15,diff=10,commitTree=5,write=15,commit=5</code>)</li>
+ * <li><code>LOAD_REPOSITORIES</code>, <code>LOAD_COMMITS</code>, <code>LOAD_FILES</code> the size of the generated repositories
+ * (default 10, 200 and 100)</li>
+ * <li><code>LOAD_GIT_THREADS</code> the number of threads the in process server runs git operations on (default 20)</li>
+ * <li><code>LOAD_VIRTUAL_THREADS</code> whether the in process server runs git operations on virtual threads instead
+ * if the JVM supports them (default false)</li>
+ * <li><code>LOAD_URL</code> the URL of a running forge server to use instead of the in process one</li>
+ * <li><code>LOAD_OWNER</code> the owner of the repositories on that server (default <code>benchmark</code>)</li>
+ * <li><code>LOAD_REPOSITORY_NAMES</code> the comma separated repository names on that server</li>
+ * <li><code>LOAD_COMMAND</code>, <code>LOAD_NAMESPACE</code> the command to execute on the repositories and their namespace</li>
+ * </ul>
+ */
+public class LoadTest {
+    private static final transient Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+    public static final String DEFAULT_MIX = "content=40,listing=10,history=15,diff=10,commitTree=5,write=15,commit=5";
+    private static final String PASSWORD = "secret";
+    private static final int TIMEOUT_MILLIS = 120000;
+
+    private final Map<LoadOperation, Integer> mix;
+    private final Map<LoadOperation, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private final String baseUrl;
+    private final String owner;
+    private final List<String> repositoryNames;
+    private final List<String> paths;
+    private final Map<String, List<String>> commitIds;
+    private final String command;
+    private final String namespace;
+    private final int thinkMillis;
+    private volatile boolean recording;
+    private volatile boolean stopped;
+
+    public LoadTest(Map<LoadOperation, Integer> mix, String baseUrl, String owner, List<String> repositoryNames, List<String> paths,
+                    Map<String, List<String>> commitIds, String command, String namespace, int thinkMillis) {
+        this.mix = mix;
+        this.baseUrl = baseUrl;
+        this.owner = owner;
+        this.repositoryNames = repositoryNames;
+        this.paths = paths;
+        this.commitIds = commitIds;
+        this.command = command;
+        this.namespace = namespace;
+        this.thinkMillis = thinkMillis;
+        for (LoadOperation operation : mix.keySet()) {
+            recorders.put(operation, new LatencyRecorder(operation.getDescription()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_USERS", "50"));
+        int durationSeconds = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_DURATION_SECONDS", "60"));
+        int warmupSeconds = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_WARMUP_SECONDS", "10"));
+        int thinkMillis = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_THINK_MILLIS", "0"));
+        Map<LoadOperation, Integer> mix = parseMix(Systems.getEnvVarOrSystemProperty("LOAD_MIX", DEFAULT_MIX));
+        String url = Systems.getEnvVarOrSystemProperty("LOAD_URL", "");
+        String command = Systems.getEnvVarOrSystemProperty("LOAD_COMMAND", "");
+        String namespace = Systems.getEnvVarOrSystemProperty("LOAD_NAMESPACE", "default");
+
+        GitRepositoryFixture fixture = null;
+        InProcessForgeServer server = null;
+        try {
+            String owner;
+            List<String> repositoryNames = new ArrayList<>();
+            List<String> paths = new ArrayList<>();
+            Map<String, List<String>> commitIds = new LinkedHashMap<>();
+            if (Strings.isNullOrBlank(url)) {
+                int repositories = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_REPOSITORIES", "10"));
+                int commits = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_COMMITS", "200"));
+                int files = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_FILES", "100"));
+                int port = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_PORT", "8181"));
+                int gitThreads = Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_GIT_THREADS", "20"));
+                boolean virtualThreads = Boolean.parseBoolean(Systems.getEnvVarOrSystemProperty("LOAD_VIRTUAL_THREADS", "false"));
+                if (mix.remove(LoadOperation.command) != null) {
+                    LOG.warn("Ignoring command executions as they need a forge server with addons; set LOAD_URL to include them");
+                }
+
+                owner = GitRepositoryFixture.USER;
+                fixture = GitRepositoryFixture.create(repositories, commits, files, 100);
+                paths.addAll(fixture.getPaths());
+                List<RepositoryDTO> dtos = new ArrayList<>();
+                for (File remoteFolder : fixture.getRemoteFolders()) {
+                    String name = remoteFolder.getName().replaceAll("\\.git$", "");
+                    RepositoryDTO dto = new RepositoryDTO();
+                    dto.setName(name);
+                    dto.setFullName(owner + "/" + name);
+                    dto.setCloneUrl(GitRepositoryFixture.getCloneUrl(remoteFolder));
+                    dtos.add(dto);
+                    repositoryNames.add(name);
+                    commitIds.put(name, loadCommitIds(remoteFolder));
+                }
+                File projectFolder = new File(fixture.getRootFolder(), "forge");
+                server = new InProcessForgeServer(projectFolder, port, owner, PASSWORD, gitThreads, virtualThreads);
+                server.start(dtos);
+                url = server.getBaseUrl();
+            } else {
+                owner = Systems.getEnvVarOrSystemProperty("LOAD_OWNER", GitRepositoryFixture.USER);
+                for (String name : Systems.getEnvVarOrSystemProperty("LOAD_REPOSITORY_NAMES", "").split(",")) {
+                    if (Strings.isNotBlank(name)) {
+                        repositoryNames.add(name.trim());
+                    }
+                }
+                if (repositoryNames.isEmpty()) {
+                    throw new IllegalArgumentException("LOAD_REPOSITORY_NAMES must be specified when using LOAD_URL");
+                }
+                // only the paths which the fixture would generate are known up front
+                paths.addAll(new GitRepositoryFixture(null, 1, Integer.parseInt(Systems.getEnvVarOrSystemProperty("LOAD_FILES", "100")), 1).getPaths());
+            }
+
+            if (mix.containsKey(LoadOperation.command) && Strings.isNullOrBlank(command)) {
+                throw new IllegalArgumentException("LOAD_COMMAND must be specified to include command executions");
+            }
+            LoadTest loadTest = new LoadTest(mix, url, owner, repositoryNames, paths, commitIds, command, namespace, thinkMillis);
+            loadTest.run(users, warmupSeconds, durationSeconds);
+            System.out.println(loadTest.createReport(users, durationSeconds));
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+            if (fixture != null) {
+                fixture.delete();
+            }
+        }
+    }
+
+    public void run(int users, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(users);
+        for (int i = 0; i < users; i++) {
+            final String user = "user" + i;
+            final Random random = new Random(i);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stopped) {
+                            performRequest(user, random);
+                            if (thinkMillis > 0) {
+                                Thread.sleep(thinkMillis);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        // stop
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }, "load-" + user);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        LOG.info("Warming up " + users + " users for " + warmupSeconds + " seconds");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        recording = true;
+        LOG.info("Recording for " + durationSeconds + " seconds");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        recording = false;
+        stopped = true;
+        finished.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    protected void performRequest(String user, Random random) {
+        LoadOperation operation = chooseOperation(random);
+        String repository = repositoryNames.get(random.nextInt(repositoryNames.size()));
+        String repositoryUrl = baseUrl + "/api/forge/repos/user/" + owner + "/" + repository + "/";
+        String path = paths.get(random.nextInt(paths.size()));
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            int status;
+            switch (operation) {
+                case content:
+                    status = send("GET", repositoryUrl + "content/" + path, user, null);
+                    break;
+                case listing:
+                    status = send("GET", repositoryUrl + "content/" + path.substring(0, path.lastIndexOf('/')), user, null);
+                    break;
+                case history:
+                    status = send("GET", repositoryUrl + "history?limit=50", user, null);
+                    break;
+                case diff:
+                    status = send("GET", repositoryUrl + "diff/" + chooseCommitId(repository, random), user, null);
+                    break;
+                case commitTree:
+                    status = send("GET", repositoryUrl + "commitTree/" + chooseCommitId(repository, random), user, null);
+                    break;
+                case write:
+                    status = send("POST", repositoryUrl + "content/" + path + "?message=" + encode("load test write by " + user), user, createContent(user, random));
+                    break;
+                case commit:
+                    status = send("POST", repositoryUrl + "commit/" + path + "?message=" + encode("load test commit by " + user), user, createContent(user, random));
+                    break;
+                case command:
+                    String json = "{\"namespace\":\"" + namespace + "\",\"projectName\":\"" + repository + "\",\"resource\":\"\",\"inputList\":[{}]}";
+                    status = send("POST", baseUrl + "/api/forge/command/execute/" + command, user, json.getBytes(StandardCharsets.UTF_8));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+            success = status < 400;
+            if (!success && LOG.isDebugEnabled()) {
+                LOG.debug(operation + " on " + repository + " returned " + status);
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to perform " + operation + " on " + repository + ". " + e, e);
+            success = false;
+        }
+        if (recording) {
+            recorders.get(operation).record(System.nanoTime() - start, success);
+        }
+    }
+
+    protected int send(String method, String url, String user, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "application/json");
+        String credentials = user + ":" + PASSWORD;
+        connection.setRequestProperty("GogsAuthorization", "Basic " + Base64.encodeBytes(credentials.getBytes(StandardCharsets.UTF_8)));
+        connection.setRequestProperty("GogsEmail", user + "@fabric8.io");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", method.equals("POST") && url.contains("/command/") ? "application/json" : "text/plain");
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // lets consume the response like a real client
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+
+    public String createReport(int users, int durationSeconds) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%n%d users for %d seconds against %s%n", users, durationSeconds, baseUrl));
+        builder.append(String.format("%-32s %8s %8s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/sec", "p50 ms", "p99 ms", "max ms"));
+        int totalCount = 0;
+        for (LatencyRecorder recorder : recorders.values()) {
+            int count = recorder.getCount();
+            totalCount += count;
+            builder.append(String.format("%-32s %8d %8d %10.1f %10.1f %10.1f %10.1f%n", recorder.getName(), count, recorder.getErrors(),
+                    count / (double) durationSeconds, recorder.percentile(50), recorder.percentile(99), recorder.max()));
+        }
+        builder.append(String.format("%-32s %8d %8s %10.1f%n", "total", totalCount, "", totalCount / (double) durationSeconds));
+        return builder.toString();
+    }
+
+    protected LoadOperation chooseOperation(Random random) {
+        int total = 0;
+        for (Integer weight : mix.values()) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (Map.Entry<LoadOperation, Integer> entry : mix.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("No operations configured");
+    }
+
+    protected String chooseCommitId(String repository, Random random) {
+        List<String> ids = commitIds.get(repository);
+        if (ids == null || ids.isEmpty()) {
+            return "HEAD";
+        }
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    protected static byte[] createContent(String user, Random random) {
+        return ("// written by " + user + " " + Long.toHexString(random.nextLong()) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected static List<String> loadCommitIds(File remoteFolder) throws Exception {
+        List<String> answer = new ArrayList<>();
+        Git git = Git.open(remoteFolder);
+        try {
+            for (RevCommit commit : git.log().call()) {
+                answer.add(commit.getName());
+            }
+        } finally {
+            git.close();
+        }
+        return answer;
+    }
+
+    /**
+     * Parses a mix such as <code>content=40,history=20,write=10</code>
+     */
+    public static Map<LoadOperation, Integer> parseMix(String text) {
+        Map<LoadOperation, Integer> answer = new LinkedHashMap<>();
+        for (String entry : text.split(",")) {
+            String[] values = entry.split("=", 2);
+            if (values.length == 2 && Strings.isNotBlank(values[0])) {
+                int weight = Integer.parseInt(values[1].trim());
+                if (weight > 0) {
+                    answer.put(LoadOperation.valueOf(values[0].trim()), weight);
+                }
+            }
+        }
+        if (answer.isEmpty()) {
+            throw new IllegalArgumentException("No operations in the mix: " + text);
+        }
+        return answer;
+    }
+
+    protected static String encode(String text) throws IOException {
+        return URLEncoder.encode(text, "UTF-8");
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.forge.benchmarks.GitRepositoryFixture;
+import io.fabric8.forge.rest.git.dto.CommitInfo;
+import io.fabric8.forge.rest.git.dto.CommitTreeInfo;
+import io.fabric8.forge.rest.main.UserDetails;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the git operations behind the {@link RepositoryResource} REST endpoints against a generated repository.
+ * <p/>
+ * This class lives in the same package as {@link RepositoryResource} so that it can invoke the <code>doXXX</code>
+ * methods directly; which excludes the cloning, stashing and pulling that the REST endpoints do first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RepositoryResourceBenchmark {
+    @Param({"100", "1000"})
+    public int commits;
+
+    @Param({"100", "1000"})
+    public int files;
+
+    @Param({"50"})
+    public int historyLimit;
+
+    /**
+     * Whether writes push to the <code>file://</code> remote like they do against gogs
+     */
+    @Param({"true"})
+    public boolean push;
+
+    private GitRepositoryFixture fixture;
+    private Git git;
+    private RepositoryResource resource;
+    private RepositoryResource blobResource;
+    private PersonIdent personIdent;
+    private List<String> commitIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = GitRepositoryFixture.create(1, commits, files, 100);
+        File cloneFolder = fixture.getCloneFolders().get(0);
+        File remoteFolder = fixture.getRemoteFolders().get(0);
+        git = Git.open(cloneFolder);
+        for (RevCommit commit : git.log().call()) {
+            commitIds.add(commit.getName());
+        }
+
+        UserDetails userDetails = new UserDetails(remoteFolder.getParent(), remoteFolder.getParent(), GitRepositoryFixture.USER, "", GitRepositoryFixture.USER + "@fabric8.io");
+        personIdent = userDetails.createPersonIdent();
+        resource = createResource(userDetails, cloneFolder, GitRepositoryFixture.getCloneUrl(remoteFolder));
+        blobResource = createResource(userDetails, cloneFolder, GitRepositoryFixture.getCloneUrl(remoteFolder));
+        blobResource.setObjectId(commitIds.get(0));
+    }
+
+    protected RepositoryResource createResource(UserDetails userDetails, File cloneFolder, String cloneUrl) throws Exception {
+        return new RepositoryResource(cloneFolder, new File(cloneFolder, ".git"), userDetails, "origin", GitRepositoryFixture.BRANCH,
+                GitRepositoryFixture.USER + "/" + cloneFolder.getName(), new GitLockManager(), null, cloneUrl, null) {
+            @Override
+            protected boolean isPushOnCommit() {
+                return push;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (git != null) {
+            git.close();
+        }
+        if (fixture != null) {
+            fixture.delete();
+        }
+    }
+
+    @Benchmark
+    public Response fileDetailsFromWorkingCopy() {
+        return resource.doFileDetails(git, randomPath());
+    }
+
+    @Benchmark
+    public Response fileDetailsAtCommit() {
+        return blobResource.doFileDetails(git, randomPath());
+    }
+
+    @Benchmark
+    public Response listFolder() {
+        String path = randomPath();
+        return resource.doFileDetails(git, path.substring(0, path.lastIndexOf('/')));
+    }
+
+    @Benchmark
+    public List<CommitInfo> history() {
+        return resource.doHistory(git, null, null, historyLimit);
+    }
+
+    @Benchmark
+    public List<CommitInfo> fileHistory() {
+        return resource.doHistory(git, null, randomPath(), historyLimit);
+    }
+
+    @Benchmark
+    public String diff() throws Exception {
+        return resource.doDiff(git, randomCommitId(), null, null);
+    }
+
+    @Benchmark
+    public List<CommitTreeInfo> commitTree() {
+        return resource.doGetCommitTree(git, randomCommitId());
+    }
+
+    @Benchmark
+    public CommitInfo write() throws Exception {
+        String content = "// benchmark write " + Long.toHexString(ThreadLocalRandom.current().nextLong()) + "\n";
+        return resource.doWrite(git, randomPath(), content.getBytes(StandardCharsets.UTF_8), personIdent, "Benchmark write");
+    }
+
+    protected String randomPath() {
+        List<String> paths = fixture.getPaths();
+        return paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+    }
+
+    protected String randomCommitId() {
+        return commitIds.get(ThreadLocalRandom.current().nextInt(commitIds.size()));
+    }
+}
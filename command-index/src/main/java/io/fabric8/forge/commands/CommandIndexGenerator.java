@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.commands;
+
+import io.fabric8.forge.rest.dto.CommandIndexDTO;
+import io.fabric8.forge.rest.dto.UICommands;
+import io.fabric8.forge.rest.main.CommandIndex;
+import io.fabric8.forge.rest.model.Models;
+import io.fabric8.forge.rest.ui.RestUIContext;
+import org.jboss.forge.addon.ui.command.CommandFactory;
+import org.jboss.forge.addon.ui.command.UICommand;
+import org.jboss.forge.addon.ui.metadata.UICommandMetadata;
+import org.jboss.forge.furnace.Furnace;
+import org.jboss.forge.furnace.addons.Addon;
+import org.jboss.forge.furnace.addons.AddonRegistry;
+import org.jboss.forge.furnace.proxy.Proxies;
+import org.jboss.forge.furnace.repositories.AddonRepositoryMode;
+import org.jboss.forge.furnace.se.FurnaceFactory;
+import org.jboss.forge.furnace.util.Addons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the {@link CommandIndex} of the commands in the addon repository at build time; so that forge can list
+ * commands without loading them and only start their addons on first use.
+ * <p/>
+ * Run by the build with the addon repository folder followed by the names of the addons which must provide commands
+ * and writes <code>fabric8-forge-commands.json</code> into the folder. As forge trusts the index to list commands the
+ * build fails rather than writing an index which is empty or misses commands; such as when an addon fails to start or
+ * a command cannot be loaded.
+ */
+public class CommandIndexGenerator {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandIndexGenerator.class);
+    private static final String FACET_CONSTRAINT = "org.jboss.forge.addon.facets.constraints.FacetConstraint";
+    private static final String FACET_CONSTRAINTS = "org.jboss.forge.addon.facets.constraints.FacetConstraints";
+    private static final long ADDON_START_TIMEOUT_SECONDS = 300;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            LOG.error("Usage: CommandIndexGenerator addonRepositoryFolder [requiredAddonName...]");
+            System.exit(1);
+        }
+        File addonRepository = new File(args[0]);
+        List<String> requiredAddons = Arrays.asList(args).subList(1, args.length);
+        File indexFile = new File(addonRepository, CommandIndex.INDEX_FILE_NAME);
+        try {
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IllegalStateException("Could not delete the old command index " + indexFile);
+            }
+            List<CommandIndexDTO> commands = generateIndex(addonRepository, requiredAddons);
+            Models.saveJson(indexFile, commands);
+            LOG.info("Generated the index of " + commands.size() + " commands at " + indexFile);
+            // Furnace leaves non daemon threads behind
+            System.exit(0);
+        } catch (Throwable e) {
+            LOG.error("Failed to generate the command index " + indexFile + ". " + e, e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts Furnace on the addon repository and returns the index of its commands
+     *
+     * @throws IllegalStateException if any addon fails to start, any command cannot be loaded or any of the required
+     *                               addons provides no commands
+     */
+    public static List<CommandIndexDTO> generateIndex(File addonRepository, List<String> requiredAddons) throws Exception {
+        if (!addonRepository.isDirectory()) {
+            throw new IllegalStateException("The addon repository " + addonRepository + " does not exist");
+        }
+        Furnace furnace = FurnaceFactory.getInstance();
+        furnace.addRepository(AddonRepositoryMode.IMMUTABLE, addonRepository);
+        furnace.startAsync().get();
+        try {
+            AddonRegistry addonRegistry = furnace.getAddonRegistry();
+            List<String> failures = new ArrayList<>();
+            for (Addon addon : addonRegistry.getAddons()) {
+                try {
+                    Addons.waitUntilStarted(addon, ADDON_START_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    LOG.warn("Failed to wait for addon " + addon.getId() + " to start: " + e, e);
+                }
+                if (!addon.getStatus().isStarted()) {
+                    failures.add("addon " + addon.getId() + " is " + addon.getStatus());
+                }
+            }
+            List<CommandIndexDTO> answer = createIndex(addonRegistry, failures);
+            Set<String> indexedAddons = new TreeSet<>();
+            for (CommandIndexDTO command : answer) {
+                if (command.getAddon() != null) {
+                    indexedAddons.add(command.getAddon());
+                }
+            }
+            for (String requiredAddon : requiredAddons) {
+                if (!indexedAddons.contains(requiredAddon)) {
+                    failures.add("no commands found for addon " + requiredAddon);
+                }
+            }
+            if (answer.isEmpty()) {
+                failures.add("no commands found");
+            }
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("The command index of " + addonRepository + " would be incomplete: " + failures);
+            }
+            return answer;
+        } finally {
+            furnace.stop();
+        }
+    }
+
+    protected static List<CommandIndexDTO> createIndex(AddonRegistry addonRegistry, List<String> failures) throws Exception {
+        CommandFactory commandFactory = addonRegistry.getServices(CommandFactory.class).get();
+        List<CommandIndexDTO> answer = new ArrayList<>();
+        try (RestUIContext context = new RestUIContext()) {
+            for (String commandName : new TreeSet<>(commandFactory.getCommandNames(context))) {
+                try {
+                    UICommand command = commandFactory.getCommandByName(context, commandName);
+                    if (command == null) {
+                        failures.add("could not find command " + commandName);
+                        continue;
+                    }
+                    UICommandMetadata metadata = command.getMetadata(context);
+                    String name = UICommands.unshellifyName(metadata.getName());
+                    CommandIndexDTO dto = new CommandIndexDTO(UICommands.shellifyName(name), name, metadata.getDescription(),
+                            toStringOrNull(metadata.getCategory()), toStringOrNull(metadata.getDocLocation()),
+                            findAddonName(addonRegistry, command));
+                    dto.setCommandName(commandName);
+                    dto.setFacets(findRequiredFacets(command));
+                    answer.add(dto);
+                } catch (Exception e) {
+                    LOG.warn("Failed to index command " + commandName + ": " + e, e);
+                    failures.add("could not index command " + commandName + ": " + e);
+                }
+            }
+        }
+        return answer;
+    }
+    /**
+     * Returns the name of the addon whose class loader loaded the command
+     */
+    protected static String findAddonName(AddonRegistry addonRegistry, UICommand command) {
+        ClassLoader classLoader = Proxies.unwrap(command).getClass().getClassLoader();
+        for (Addon addon : addonRegistry.getAddons()) {
+            if (addon.getClassLoader() == classLoader) {
+                return addon.getId().getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the facets required by the facet constraints of the command class and its super classes. The annotations
+     * are looked up by name as they are loaded by the class loader of the facets addon
+     */
+    protected static List<String> findRequiredFacets(UICommand command) throws Exception {
+        Set<String> answer = new TreeSet<>();
+        for (Class<?> clazz = Proxies.unwrap(command).getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Annotation annotation : clazz.getDeclaredAnnotations()) {
+                String annotationName = annotation.annotationType().getName();
+                if (FACET_CONSTRAINT.equals(annotationName)) {
+                    addFacets(answer, annotation);
+                } else if (FACET_CONSTRAINTS.equals(annotationName)) {
+                    for (Object constraint : (Object[]) invokeValue(annotation)) {
+                        addFacets(answer, (Annotation) constraint);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(answer);
+    }
+
+    protected static void addFacets(Set<String> facets, Annotation constraint) throws Exception {
+        for (Class<?> facet : (Class<?>[]) invokeValue(constraint)) {
+            facets.add(facet.getName());
+        }
+    }
+
+    protected static Object invokeValue(Annotation annotation) throws Exception {
+        Method method = annotation.annotationType().getMethod("value");
+        return method.invoke(annotation);
+    }
+
+    protected static String toStringOrNull(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.forge.rest.dto.ExecutionRequest;
+import io.fabric8.forge.rest.ui.CommandEventStream;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.fabric8.forge.rest.git.RepositoryEventsServlet.lookupBean;
+
+/**
+ * Executes a command streaming its output to the client as server sent events while it runs; see
+ * {@link CommandEventStream}.
+ * <p/>
+ * Clients POST the same {@link ExecutionRequest} as <code>/api/forge/command/execute/{name}</code> to
+ * <code>/api/forge/command/stream/{name}</code>. The request is handled asynchronously so that no request thread is
+ * held while the command runs; the events are written by a small pool of threads.
+ */
+public class CommandEventsServlet extends HttpServlet {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandEventsServlet.class);
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    protected static int writerThreads = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_COMMAND_STREAM_WRITER_THREADS", "4"));
+    protected static int maxQueuedEvents = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_COMMAND_STREAM_MAX_QUEUED", "1000"));
+
+    @Inject
+    private CommandsResource commandsResource;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<CommandEventStream> streams = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService writerService = Executors.newFixedThreadPool(Math.max(1, writerThreads), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "forge-command-events-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        if (commandsResource == null) {
+            commandsResource = lookupBean(CommandsResource.class);
+        }
+        executorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (CommandEventStream stream : streams) {
+                    // lets keep the connection open while the command is quiet
+                    stream.heartbeat();
+                }
+            }
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+        writerService.shutdownNow();
+        for (CommandEventStream stream : streams) {
+            stream.close();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String name = request.getPathInfo();
+        if (name != null && name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        if (Strings.isNullOrBlank(name) || name.contains("/")) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a path of the form {name}");
+            return;
+        }
+        ExecutionRequest executionRequest;
+        try {
+            executionRequest = objectMapper.readValue(request.getInputStream(), ExecutionRequest.class);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Failed to parse the execution request: " + e);
+            return;
+        }
+        response.setContentType(CommandEventStream.MEDIA_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.flushBuffer();
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        final CommandEventStream events = new CommandEventStream(asyncContext, writerService, maxQueuedEvents);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                streams.remove(events);
+                events.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                events.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                events.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        streams.add(events);
+        LOG.debug("Streaming the events of command " + name);
+        commandsResource.executeCommandStream(name, executionRequest, request, events);
+    }
+}
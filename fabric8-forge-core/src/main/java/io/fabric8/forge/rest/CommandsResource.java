@@ -15,26 +15,44 @@
  */
 package io.fabric8.forge.rest;
 
+import io.fabric8.forge.rest.dto.CommandIndexDTO;
 import io.fabric8.forge.rest.dto.CommandInfoDTO;
+import io.fabric8.forge.rest.dto.CommandJobDTO;
 import io.fabric8.forge.rest.dto.CommandInputDTO;
 import io.fabric8.forge.rest.dto.ExecutionRequest;
 import io.fabric8.forge.rest.dto.ExecutionResult;
 import io.fabric8.forge.rest.dto.UICommands;
 import io.fabric8.forge.rest.dto.ValidationResult;
 import io.fabric8.forge.rest.dto.WizardResultsDTO;
+import io.fabric8.forge.rest.git.BranchWorkTrees;
 import io.fabric8.forge.rest.git.GitContext;
 import io.fabric8.forge.rest.git.GitLockManager;
 import io.fabric8.forge.rest.git.GitOperation;
+import io.fabric8.forge.rest.git.GitOperationExecutor;
 import io.fabric8.forge.rest.git.RepositoriesResource;
+import io.fabric8.forge.rest.git.RepositoryEvents;
 import io.fabric8.forge.rest.git.RepositoryResource;
 import io.fabric8.forge.rest.hooks.CommandCompletePostProcessor;
+import io.fabric8.forge.rest.main.CommandIndex;
+import io.fabric8.forge.rest.main.CommandInfoCache;
+import io.fabric8.forge.rest.main.CommandJob;
+import io.fabric8.forge.rest.main.CommandJobs;
+import io.fabric8.forge.rest.main.ForgeInitialiser;
 import io.fabric8.forge.rest.main.GitUserHelper;
 import io.fabric8.forge.rest.main.ProjectFileSystem;
 import io.fabric8.forge.rest.main.RepositoryCache;
+import io.fabric8.forge.rest.main.TypeaheadCache;
 import io.fabric8.forge.rest.main.UserDetails;
+import io.fabric8.forge.rest.producer.FurnaceProducer;
+import io.fabric8.forge.rest.ui.CommandAsyncResponse;
+import io.fabric8.forge.rest.ui.CommandEventStream;
+import io.fabric8.forge.rest.ui.CommandOutputs;
 import io.fabric8.forge.rest.ui.RestUIContext;
 import io.fabric8.forge.rest.ui.RestUIFunction;
 import io.fabric8.forge.rest.ui.RestUIRuntime;
+import io.fabric8.forge.rest.ui.SpillableOutputStream;
+import io.fabric8.forge.rest.ui.WizardSession;
+import io.fabric8.forge.rest.ui.WizardSessions;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Strings;
 import org.eclipse.jgit.api.Git;
@@ -47,7 +65,9 @@ import org.jboss.forge.addon.ui.command.UICommand;
 import org.jboss.forge.addon.ui.controller.CommandController;
 import org.jboss.forge.addon.ui.controller.CommandControllerFactory;
 import org.jboss.forge.addon.ui.controller.WizardCommandController;
+import org.jboss.forge.addon.ui.input.InputComponent;
 import org.jboss.forge.addon.ui.output.UIMessage;
+import org.jboss.forge.addon.ui.progress.DefaultUIProgressMonitor;
 import org.jboss.forge.addon.ui.result.Result;
 import org.jboss.forge.furnace.Furnace;
 import org.jboss.forge.furnace.addons.AddonRegistry;
@@ -59,23 +79,36 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 @Path("/api/forge")
 @Stateless
@@ -97,6 +130,9 @@ public class CommandsResource {
             "build",
             "project-new"
     ));
+    protected static final String COMMANDS_WITHOUT_PROJECT = "commands";
+    protected static final int MAX_TYPEAHEAD_RESULTS = 500;
+    protected static final int TOO_MANY_REQUESTS = 429;
     protected static final List<String> ignoreCommandPrefixes = Arrays.asList("addon-", "archetype-", "fabric8-", "git-", "camel-get-");
 
     @Inject
@@ -126,6 +162,36 @@ public class CommandsResource {
     @Inject
     private GitLockManager lockManager;
 
+    @Inject
+    private BranchWorkTrees workTrees;
+
+    @Inject
+    private GitOperationExecutor executor;
+
+    @Inject
+    private RepositoryEvents repositoryEvents;
+
+    @Inject
+    private WizardSessions wizardSessions;
+
+    @Inject
+    private CommandInfoCache commandInfoCache;
+
+    @Inject
+    private TypeaheadCache typeaheadCache;
+
+    @Inject
+    private CommandJobs commandJobs;
+
+    @Inject
+    private ForgeInitialiser forgeInitialiser;
+
+    @Inject
+    private FurnaceProducer furnaceProducer;
+
+    @Inject
+    private CommandIndex commandIndex;
+
     @Context
     private HttpServletRequest request;
 
@@ -137,11 +203,32 @@ public class CommandsResource {
         return furnace.getVersion().toString();
     }
 
+    /**
+     * Returns 200 once Forge has warmed up or 503 while it is still warming up; so that pods only receive traffic
+     * once the first users no longer have to wait for the warm up
+     */
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response ready() {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        boolean ready = forgeInitialiser.isReady();
+        answer.put("ready", ready);
+        answer.put("stages", forgeInitialiser.getStageStatuses());
+        return Response.status(ready ? Status.OK : Status.SERVICE_UNAVAILABLE).entity(answer).build();
+    }
+
     @GET
     @Path("/commandNames")
     @Produces(MediaType.APPLICATION_JSON)
     public List<String> getCommandNames() {
         List<String> answer = new ArrayList<>();
+        if (!commandIndex.isEmpty()) {
+            for (CommandIndexDTO command : commandIndex.getCommands()) {
+                answer.add(command.getCommandName());
+            }
+            return answer;
+        }
         try (RestUIContext context = new RestUIContext()) {
             for (String commandName : commandFactory.getCommandNames(context)) {
                 answer.add(commandName);
@@ -153,53 +240,145 @@ public class CommandsResource {
     @GET
     @Path("/commands")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<CommandInfoDTO> getCommands() throws Exception {
-        return getCommands(null, null, null);
+    public void getCommands(@Suspended AsyncResponse asyncResponse) throws Exception {
+        getCommands(null, null, null, asyncResponse);
     }
 
     @GET
     @Path("/commands/{namespace}/{projectName}")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<CommandInfoDTO> getCommands(@PathParam("namespace") String namespace, @PathParam("projectName") String projectName) throws Exception {
-        return getCommands(namespace, projectName, null);
+    public void getCommands(@PathParam("namespace") String namespace, @PathParam("projectName") String projectName, @Suspended AsyncResponse asyncResponse) throws Exception {
+        getCommands(namespace, projectName, null, asyncResponse);
     }
 
     @GET
     @Path("/commands/{namespace}/{projectName}/{path: .*}")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<CommandInfoDTO> getCommands(@PathParam("namespace") String namespace, @PathParam("projectName") String projectName, @PathParam("path") String resourcePath) throws Exception {
-        return withUIContext(namespace, projectName, resourcePath, false, new RestUIFunction<List<CommandInfoDTO>>() {
+    public void getCommands(@PathParam("namespace") String namespace, @PathParam("projectName") String projectName, @PathParam("path") String resourcePath, @Suspended AsyncResponse asyncResponse) throws Exception {
+        withUIContext(asyncResponse, namespace, projectName, resourcePath, false, createCommandListFunction());
+    }
+
+    /**
+     * Helper method used to pre-load the commands of JBoss Forge on the calling thread
+     */
+    public List<CommandInfoDTO> doGetCommands() throws Exception {
+        return withUIContext(null, null, null, false, createCommandListFunction());
+    }
+
+    /**
+     * Returns the enabled commands; from the {@link CommandInfoCache} if the project has not changed since. The
+     * commands of addons which have not started yet are listed from the {@link CommandIndex}
+     */
+    protected RestUIFunction<List<CommandInfoDTO>> createCommandListFunction() {
+        return new RestUIFunction<List<CommandInfoDTO>>() {
             @Override
-            public List<CommandInfoDTO> apply(RestUIContext context) {
-                List<CommandInfoDTO> answer = new ArrayList<>();
-                for (String name : commandFactory.getCommandNames(context)) {
-                    try {
-                        CommandInfoDTO dto = createCommandInfoDTO(context, name);
-                        if (dto != null && dto.isEnabled()) {
-                            answer.add(dto);
-                        }
-                    } catch (Exception e) {
-                        LOG.warn("Ignored exception on command " + name + " probably due to missing project?: " + e, e);
-                    }
+            public List<CommandInfoDTO> apply(final RestUIContext context) throws Exception {
+                String key = commandInfoCache.getKey(context.getInitialSelectionFile());
+                if (key != null) {
+                    // starting an addon group adds its commands
+                    key += ":" + furnaceProducer.getActiveAddonGroups();
+                }
+                List<CommandInfoDTO> answer = commandInfoCache.get(key);
+                if (answer == null) {
+                    answer = createCommandInfos(context);
+                    commandInfoCache.put(key, answer);
+                }
+                List<CommandIndexDTO> inactiveCommands = getInactiveIndexedCommands(context);
+                if (inactiveCommands.isEmpty()) {
+                    return answer;
+                }
+                answer = new ArrayList<>(answer);
+                for (CommandIndexDTO command : inactiveCommands) {
+                    answer.add(command.toInactiveCommandInfoDTO());
                 }
                 return answer;
             }
-        });
+        };
+    }
+
+    /**
+     * Creates the details of the enabled commands of the started addons; only the live commands are asked whether
+     * they are enabled when there is a {@link CommandIndex}. The commands are split into a batch per
+     * {@link CommandInfoCache} thread and each batch run in parallel uses its own copy of the context.
+     */
+    protected List<CommandInfoDTO> createCommandInfos(final RestUIContext context) throws Exception {
+        List<String> names = new ArrayList<>();
+        if (commandIndex.isEmpty()) {
+            names.addAll(commandFactory.getCommandNames(context));
+        } else {
+            for (CommandIndexDTO command : commandIndex.getCommands()) {
+                if (furnaceProducer.isAddonActive(command.getAddon())) {
+                    names.add(command.getCommandName());
+                }
+            }
+        }
+        final int batchCount = Math.max(1, Math.min(commandInfoCache.getThreads(), names.size()));
+        List<Callable<List<CommandInfoDTO>>> batches = new ArrayList<>();
+        for (int i = 0; i < batchCount; i++) {
+            final List<String> batch = names.subList(i * names.size() / batchCount, (i + 1) * names.size() / batchCount);
+            batches.add(new Callable<List<CommandInfoDTO>>() {
+                @Override
+                public List<CommandInfoDTO> call() throws Exception {
+                    if (batchCount == 1) {
+                        return createEnabledCommandInfos(context, batch);
+                    }
+                    try (RestUIContext batchContext = context.copy()) {
+                        return createEnabledCommandInfos(batchContext, batch);
+                    }
+                }
+            });
+        }
+        return commandInfoCache.createCommandInfos(batches);
+    }
+
+    protected List<CommandInfoDTO> createEnabledCommandInfos(RestUIContext context, List<String> names) {
+        List<CommandInfoDTO> answer = new ArrayList<>();
+        for (String name : names) {
+            try {
+                CommandInfoDTO dto = createCommandInfoDTO(context, name);
+                if (dto != null && dto.isEnabled()) {
+                    answer.add(dto);
+                }
+            } catch (Exception e) {
+                LOG.warn("Ignored exception on command " + name + " probably due to missing project?: " + e, e);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the valid commands of the index whose addons have not been started yet; leaving out those which
+     * require project facets when there is no project. They are listed as inactive rather than enabled as
+     * only the command itself can tell if it is enabled for the selection.
+     */
+    protected List<CommandIndexDTO> getInactiveIndexedCommands(RestUIContext context) {
+        List<CommandIndexDTO> answer = new ArrayList<>();
+        if (!furnaceProducer.isAllAddonGroupsActive()) {
+            File selection = context.getInitialSelectionFile();
+            boolean hasProject = selection != null && new File(selection, "pom.xml").isFile();
+            for (CommandIndexDTO command : commandIndex.getCommands()) {
+                if (!furnaceProducer.isAddonActive(command.getAddon()) && isValidCommandName(command.getCommandName())
+                        && (hasProject || command.getFacets().isEmpty())) {
+                    answer.add(command);
+                }
+            }
+        }
+        return answer;
     }
 
     @GET
     @Path("/command/{name}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCommandInfo(@PathParam("name") String name) throws Exception {
-        return getCommandInfo(name, null, null, null);
+    public void getCommandInfo(@PathParam("name") String name, @Suspended AsyncResponse asyncResponse) throws Exception {
+        getCommandInfo(name, null, null, null, asyncResponse);
     }
 
     @GET
     @Path("/command/{name}/{namespace}/{projectName}/{path: .*}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCommandInfo(@PathParam("name") final String name, @PathParam("namespace") final String namespace, @PathParam("projectName") final String projectName,
-                                   @PathParam("path") final String resourcePath) throws Exception {
-        return withUIContext(namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
+    public void getCommandInfo(@PathParam("name") final String name, @PathParam("namespace") final String namespace, @PathParam("projectName") final String projectName,
+                               @PathParam("path") final String resourcePath, @Suspended AsyncResponse asyncResponse) throws Exception {
+        withUIContext(asyncResponse, namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
             @Override
             public Response apply(RestUIContext context) {
                 CommandInfoDTO answer = createCommandInfoDTO(context, name);
@@ -215,24 +394,24 @@ public class CommandsResource {
     @GET
     @Path("/commandInput/{name}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCommandInput(@PathParam("name") String name) throws Exception {
-        return getCommandInput(name, null, null, null);
+    public void getCommandInput(@PathParam("name") String name, @Suspended AsyncResponse asyncResponse) throws Exception {
+        getCommandInput(name, null, null, null, asyncResponse);
     }
 
     @GET
     @Path("/commandInput/{name}/{namespace}/{projectName}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCommandInput(@PathParam("name") final String name, @PathParam("namespace") String namespace, @PathParam("projectName") String projectName) throws Exception {
-        return getCommandInput(name, namespace, projectName, null);
+    public void getCommandInput(@PathParam("name") final String name, @PathParam("namespace") String namespace, @PathParam("projectName") String projectName, @Suspended AsyncResponse asyncResponse) throws Exception {
+        getCommandInput(name, namespace, projectName, null, asyncResponse);
     }
 
     @GET
     @Path("/commandInput/{name}/{namespace}/{projectName}/{path: .*}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getCommandInput(@PathParam("name") final String name,
-                                    @PathParam("namespace") String namespace, @PathParam("projectName") String projectName,
-                                    @PathParam("path") String resourcePath) throws Exception {
-        return withUIContext(namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
+    public void getCommandInput(@PathParam("name") final String name,
+                                @PathParam("namespace") String namespace, @PathParam("projectName") String projectName,
+                                @PathParam("path") String resourcePath, @Suspended AsyncResponse asyncResponse) throws Exception {
+        withUIContext(asyncResponse, namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
             @Override
             public Response apply(RestUIContext context) throws Exception {
                 CommandInputDTO answer = null;
@@ -251,11 +430,84 @@ public class CommandsResource {
     }
 
 
+    @GET
+    @Path("/commandInput/{name}/typeahead/{input}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getTypeahead(@PathParam("name") String name, @PathParam("input") String inputName, @QueryParam("q") String text,
+                             @QueryParam("limit") @DefaultValue("50") int limit, @QueryParam("wizardSession") String wizardSession,
+                             @Suspended AsyncResponse asyncResponse) throws Exception {
+        getTypeahead(name, null, null, inputName, text, limit, wizardSession, asyncResponse);
+    }
+
+    /**
+     * Returns the completion proposals of an input starting with the given text; so that the UI only runs the
+     * completer of an input when the user types into it.
+     * <p/>
+     * Inputs of later wizard pages are found via the <code>wizardSession</code> token returned by validate or execute.
+     */
+    @GET
+    @Path("/commandInput/{name}/{namespace}/{projectName}/typeahead/{input}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getTypeahead(@PathParam("name") final String name, @PathParam("namespace") final String namespace,
+                             @PathParam("projectName") final String projectName, @PathParam("input") final String inputName,
+                             @QueryParam("q") String text, @QueryParam("limit") @DefaultValue("50") int limit,
+                             @QueryParam("wizardSession") String wizardSession, @Suspended AsyncResponse asyncResponse) throws Exception {
+        final String prefix = text != null ? text : "";
+        final int maxResults = Math.max(1, Math.min(limit, MAX_TYPEAHEAD_RESULTS));
+        // the user is part of the key so that the proposals of one user's wizard session are not returned to another
+        final String user = Strings.isNotBlank(wizardSession) ? getUserName(gitUserHelper.createUserDetails(request)) : null;
+        final String cacheKey = name + "/" + namespace + "/" + projectName + "/" + inputName + "/" + wizardSession + "/" + user + "?" + prefix;
+        List<Object> cached = typeaheadCache.get(cacheKey);
+        if (cached != null) {
+            asyncResponse.resume(Response.ok(UICommands.filterProposals(cached, prefix, maxResults)).build());
+            return;
+        }
+        final ExecutionRequest executionRequest = new ExecutionRequest();
+        executionRequest.setNamespace(namespace);
+        executionRequest.setProjectName(projectName);
+        executionRequest.setWizardSession(wizardSession);
+        withUIContext(asyncResponse, namespace, projectName, null, false, new RestUIFunction<Response>() {
+            @Override
+            public Response apply(RestUIContext context) throws Exception {
+                List<Object> proposals = null;
+                WizardSession session = wizardSessions.acquire(name, executionRequest, user);
+                if (session != null) {
+                    try {
+                        List<WizardCommandController> controllers = session.getControllers();
+                        for (int i = controllers.size() - 1; i >= 0 && proposals == null; i--) {
+                            InputComponent<?, ?> input = controllers.get(i).getInputs().get(inputName);
+                            if (input != null) {
+                                proposals = UICommands.getCompletionProposals(session.getContext(), input, prefix);
+                            }
+                        }
+                    } finally {
+                        wizardSessions.release(session);
+                    }
+                } else {
+                    UICommand command = getCommandByName(context, name);
+                    if (command == null) {
+                        return Response.status(Status.NOT_FOUND).build();
+                    }
+                    CommandController controller = createController(context, command);
+                    InputComponent<?, ?> input = controller.getInputs().get(inputName);
+                    if (input != null) {
+                        proposals = UICommands.getCompletionProposals(context, input, prefix);
+                    }
+                }
+                if (proposals == null) {
+                    return Response.status(Status.NOT_FOUND).build();
+                }
+                typeaheadCache.put(cacheKey, proposals);
+                return Response.ok(UICommands.filterProposals(proposals, prefix, maxResults)).build();
+            }
+        });
+    }
+
     @POST
     @Path("/command/execute/{name}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response executeCommand(@PathParam("name") final String name, final ExecutionRequest executionRequest) throws Exception {
+    public void executeCommand(@PathParam("name") final String name, final ExecutionRequest executionRequest, @Suspended AsyncResponse asyncResponse) throws Exception {
         try {
             final CommandCompletePostProcessor postProcessor = this.commandCompletePostProcessor;
             final UserDetails userDetails;
@@ -267,7 +519,7 @@ public class CommandsResource {
             String namespace = executionRequest.getNamespace();
             String projectName = executionRequest.getProjectName();
             String resourcePath = executionRequest.getResource();
-            return withUIContext(namespace, projectName, resourcePath, true, new RestUIFunction<Response>() {
+            withUIContext(asyncResponse, namespace, projectName, resourcePath, true, new RestUIFunction<Response>() {
                 @Override
                 public Response apply(RestUIContext uiContext) throws Exception {
                     userDetails.setAddress(uiContext.getCloneUrl());
@@ -280,91 +532,293 @@ public class CommandsResource {
         }
     }
 
+    /**
+     * Executes the command like {@link #executeCommand} passing its output to the {@link CommandEventStream} while it
+     * runs followed by its response; the {@link CommandEventsServlet} writes the events to the client without holding
+     * a request thread.
+     * <p/>
+     * The HTTP request is passed in as this is not invoked via JAX-RS.
+     */
+    public void executeCommandStream(final String name, final ExecutionRequest executionRequest, HttpServletRequest servletRequest, final CommandEventStream events) {
+        try {
+            final CommandCompletePostProcessor postProcessor = this.commandCompletePostProcessor;
+            final UserDetails userDetails;
+            if (postProcessor != null) {
+                userDetails = postProcessor.preprocessRequest(name, executionRequest, servletRequest);
+            } else {
+                userDetails = null;
+            }
+            withUIContext(servletRequest, new CommandAsyncResponse(events), executionRequest.getNamespace(), executionRequest.getProjectName(),
+                    executionRequest.getResource(), true, new RestUIFunction<Response>() {
+                @Override
+                public Response apply(RestUIContext uiContext) throws Exception {
+                    if (userDetails != null) {
+                        userDetails.setAddress(uiContext.getCloneUrl());
+                    }
+                    uiContext.getProvider().setOutputListener(events);
+                    return doExecute(name, executionRequest, postProcessor, userDetails, uiContext);
+                }
+            }, new GitContext());
+        } catch (WebApplicationException e) {
+            events.onResponse(e.getResponse());
+        } catch (Throwable e) {
+            LOG.warn("Failed to invoke command " + name + " on " + executionRequest + ". " + e, e);
+            events.onFailure(e);
+        }
+    }
+
+    /**
+     * Submits the command to run in the background returning the {@link CommandJobDTO} of the job straight away;
+     * its status and result can then be polled via {@link #getCommandJob} and {@link #getCommandJobResult}
+     * <p/>
+     * The response has been sent by the time the job runs so everything it needs from the HTTP request, such as the
+     * user details passed to the {@link CommandCompletePostProcessor}, is captured here on the request thread.
+     */
+    @POST
+    @Path("/command/submit/{name}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitCommand(@PathParam("name") final String name, final ExecutionRequest executionRequest) throws Exception {
+        final CommandCompletePostProcessor postProcessor = this.commandCompletePostProcessor;
+        final UserDetails userDetails;
+        if (postProcessor != null) {
+            userDetails = postProcessor.preprocessRequest(name, executionRequest, request);
+        } else {
+            userDetails = null;
+        }
+        final CommandJob job = commandJobs.create(name, getUserName(userDetails));
+        if (job == null) {
+            return Response.status(TOO_MANY_REQUESTS).header("Retry-After", GitOperationExecutor.RETRY_AFTER_SECONDS)
+                    .type(MediaType.TEXT_PLAIN).entity("Too many commands are already running").build();
+        }
+        try {
+            withUIContext(new CommandAsyncResponse(job), executionRequest.getNamespace(), executionRequest.getProjectName(),
+                    executionRequest.getResource(), true, new RestUIFunction<Response>() {
+                @Override
+                public Response apply(RestUIContext uiContext) throws Exception {
+                    if (!job.start()) {
+                        // cancelled while it was queued
+                        return null;
+                    }
+                    if (userDetails != null) {
+                        userDetails.setAddress(uiContext.getCloneUrl());
+                    }
+                    uiContext.setProgressMonitor(job.getProgressMonitor());
+                    return doExecute(name, executionRequest, postProcessor, userDetails, uiContext);
+                }
+            });
+        } catch (Throwable e) {
+            LOG.warn("Failed to invoke command " + name + " on " + executionRequest + ". " + e, e);
+            job.onFailure(e);
+        }
+        URI location = UriBuilder.fromResource(CommandsResource.class).path("command/job/{id}").build(job.getId());
+        return Response.status(Status.ACCEPTED).location(location).entity(job.toDTO()).build();
+    }
+
+    @GET
+    @Path("/command/job/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCommandJob(@PathParam("id") String id) {
+        CommandJob job = findCommandJob(id);
+        return Response.ok(job.toDTO()).build();
+    }
+
+    /**
+     * Returns the {@link ExecutionResult} of a completed job; or its {@link CommandJobDTO} with a 202 status if it
+     * has not finished yet or a 409 status if it failed or was cancelled
+     */
+    @GET
+    @Path("/command/job/{id}/result")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCommandJobResult(@PathParam("id") String id) {
+        CommandJob job = findCommandJob(id);
+        switch (job.getStatus()) {
+            case COMPLETED:
+                return Response.ok(job.getResult()).build();
+            case QUEUED:
+            case RUNNING:
+                return Response.status(Status.ACCEPTED).entity(job.toDTO()).build();
+            default:
+                return Response.status(Status.CONFLICT).entity(job.toDTO()).build();
+        }
+    }
+
+    /**
+     * Cancels a job; a queued job does not run and a running command is asked to stop via its progress monitor
+     */
+    @DELETE
+    @Path("/command/job/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelCommandJob(@PathParam("id") String id) {
+        CommandJob job = findCommandJob(id);
+        job.cancel();
+        return Response.ok(job.toDTO()).build();
+    }
+
+    protected CommandJob findCommandJob(String id) {
+        CommandJob job = commandJobs.get(id, getUserName(gitUserHelper.createUserDetails(request)));
+        if (job == null) {
+            throw new NotFoundException("Could not find command job " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Downloads the whole output of a command whose result only included its tail; via the <code>outputId</code> of
+     * the result
+     *
+     * @param stream either <code>out</code> or <code>err</code>
+     */
+    @GET
+    @Path("/command/output/{id}/{stream}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getCommandOutput(@PathParam("id") String id, @PathParam("stream") String stream) {
+        final SpillableOutputStream output = CommandOutputs.get(id, stream);
+        if (output == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        StreamingOutput entity = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                output.writeTo(outputStream);
+            }
+        };
+        return Response.ok(entity, MediaType.TEXT_PLAIN).build();
+    }
+
     /**
      * This method is only used to warm up JBoss Forge so we can create a sample project on startup in a temporary directory
      */
     public Response doExecute(@PathParam("name") String name, ExecutionRequest executionRequest, CommandCompletePostProcessor postProcessor, UserDetails userDetails, RestUIContext uiContext) throws Exception {
-        try (RestUIContext context = uiContext) {
-            UICommand command = getCommandByName(context, name);
-            if (command == null) {
-                return Response.status(Status.NOT_FOUND).build();
-            }
-            List<Map<String, String>> inputList = executionRequest.getInputList();
-            CommandController controller = createController(context, command);
-            configureAttributeMaps(userDetails, controller, executionRequest);
-            ExecutionResult answer = null;
-            if (controller instanceof WizardCommandController) {
-                WizardCommandController wizardCommandController = (WizardCommandController) controller;
-                List<WizardCommandController> controllers = new ArrayList<>();
-                List<CommandInputDTO> stepPropertiesList = new ArrayList<>();
-                List<ExecutionResult> stepResultList = new ArrayList<>();
-                List<ValidationResult> stepValidationList = new ArrayList<>();
-                controllers.add(wizardCommandController);
-                WizardCommandController lastController = wizardCommandController;
-                Result lastResult = null;
-                int page = executionRequest.wizardStep();
-                int nextPage = page + 1;
-                boolean canMoveToNextStep = false;
-                for (Map<String, String> inputs : inputList) {
-                    UICommands.populateController(inputs, lastController, getConverterFactory());
-                    List<UIMessage> messages = lastController.validate();
-                    ValidationResult stepValidation = UICommands.createValidationResult(context, lastController, messages);
-                    stepValidationList.add(stepValidation);
-                    if (!stepValidation.isValid()) {
-                        break;
+        try (RestUIContext requestContext = uiContext) {
+            WizardSession session = resumeWizardSession(name, executionRequest, userDetails);
+            boolean keepSession = false;
+            try {
+                RestUIContext context = session != null ? session.getContext() : requestContext;
+                if (session != null) {
+                    // the command runs in the context of the session
+                    context.getProvider().setOutputListener(requestContext.getProvider().getOutputListener());
+                    context.setProgressMonitor(requestContext.getProgressMonitor());
+                }
+                UICommand command = session != null ? session.getCommand() : getCommandByName(context, name);
+                if (command == null) {
+                    return Response.status(Status.NOT_FOUND).build();
+                }
+                List<Map<String, String>> inputList = executionRequest.getInputList();
+                CommandController controller = session != null ? session.getControllers().get(0) : createController(context, command);
+                configureAttributeMaps(userDetails, controller, executionRequest);
+                ExecutionResult answer = null;
+                if (controller instanceof WizardCommandController) {
+                    WizardCommandController wizardCommandController = (WizardCommandController) controller;
+                    if (session == null) {
+                        session = wizardSessions.create(name, executionRequest, getUserName(userDetails), context, command, wizardCommandController);
+                    }
+                    List<WizardCommandController> controllers;
+                    int startPage = 0;
+                    if (session != null) {
+                        controllers = session.getControllers();
+                        startPage = session.getCompletedPages();
+                    } else {
+                        controllers = new ArrayList<>();
+                        controllers.add(wizardCommandController);
                     }
-                    canMoveToNextStep = lastController.canMoveToNextStep();
-                    boolean valid = lastController.isValid();
-                    if (!canMoveToNextStep) {
-                        // lets assume we can execute now
-                        lastResult = lastController.execute();
-                        LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
-                        ExecutionResult stepResults = UICommands.createExecutionResult(context, lastResult, false);
-                        stepResultList.add(stepResults);
-                        break;
-                    } else if (!valid) {
-                        LOG.warn("Cannot move to next step as invalid despite the validation saying otherwise");
-                        break;
+                    List<CommandInputDTO> stepPropertiesList = new ArrayList<>();
+                    List<ExecutionResult> stepResultList = new ArrayList<>();
+                    List<ValidationResult> stepValidationList = new ArrayList<>();
+                    for (int i = 0; i < startPage; i++) {
+                        // the pages the session has already moved past
+                        ValidationResult stepValidation = session.getPageValidation(i);
+                        if (stepValidation == null) {
+                            stepValidation = UICommands.createValidationResult(context, controllers.get(i), new ArrayList<UIMessage>());
+                        }
+                        stepValidationList.add(stepValidation);
+                        stepPropertiesList.add(UICommands.createCommandInputDTO(context, command, controllers.get(i + 1)));
                     }
-                    WizardCommandController nextController = lastController.next();
-                    if (nextController != null) {
-                        if (nextController == lastController) {
-                            LOG.warn("No idea whats going on ;)");
+                    WizardCommandController lastController = controllers.get(startPage);
+                    Result lastResult = null;
+                    int page = executionRequest.wizardStep();
+                    int nextPage = page + 1;
+                    boolean canMoveToNextStep = false;
+                    for (Map<String, String> inputs : inputList.subList(startPage, inputList.size())) {
+                        UICommands.populateController(inputs, lastController, getConverterFactory());
+                        List<UIMessage> messages = lastController.validate();
+                        ValidationResult stepValidation = UICommands.createValidationResult(context, lastController, messages);
+                        stepValidationList.add(stepValidation);
+                        if (!stepValidation.isValid()) {
                             break;
                         }
-                        lastController = nextController;
-                        lastController.initialize();
-                        controllers.add(lastController);
-                        CommandInputDTO stepDto = UICommands.createCommandInputDTO(context, command, lastController);
-                        stepPropertiesList.add(stepDto);
-                    } else {
-                        int i = 0;
-                        for (WizardCommandController stepController : controllers) {
-                            Map<String, String> stepControllerInputs = inputList.get(i++);
-                            UICommands.populateController(stepControllerInputs, stepController, getConverterFactory());
-                            lastResult = stepController.execute();
+                        canMoveToNextStep = lastController.canMoveToNextStep();
+                        boolean valid = lastController.isValid();
+                        if (!canMoveToNextStep) {
+                            // lets assume we can execute now
+                            lastResult = lastController.execute();
                             LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
                             ExecutionResult stepResults = UICommands.createExecutionResult(context, lastResult, false);
                             stepResultList.add(stepResults);
+                            break;
+                        } else if (!valid) {
+                            LOG.warn("Cannot move to next step as invalid despite the validation saying otherwise");
+                            break;
                         }
-                        break;
+                        WizardCommandController nextController = lastController.next();
+                        if (nextController != null) {
+                            if (nextController == lastController) {
+                                LOG.warn("No idea whats going on ;)");
+                                break;
+                            }
+                            lastController = nextController;
+                            lastController.initialize();
+                            if (session != null) {
+                                session.pageCompleted(inputs, stepValidation, lastController);
+                            } else {
+                                controllers.add(lastController);
+                            }
+                            CommandInputDTO stepDto = UICommands.createCommandInputDTO(context, command, lastController);
+                            stepPropertiesList.add(stepDto);
+                        } else {
+                            int i = 0;
+                            for (WizardCommandController stepController : controllers) {
+                                if (context.getProgressMonitor().isCancelled()) {
+                                    LOG.info("Stopped executing command " + name + " as it was cancelled");
+                                    break;
+                                }
+                                Map<String, String> stepControllerInputs = inputList.get(i++);
+                                UICommands.populateController(stepControllerInputs, stepController, getConverterFactory());
+                                lastResult = stepController.execute();
+                                LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
+                                ExecutionResult stepResults = UICommands.createExecutionResult(context, lastResult, false);
+                                stepResultList.add(stepResults);
+                            }
+                            break;
+                        }
+                    }
+                    answer = UICommands.createExecutionResult(context, lastResult, canMoveToNextStep);
+                    WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepValidationList, stepResultList);
+                    answer.setWizardResults(wizardResultsDTO);
+                    // once the wizard has been executed its controllers cannot be reused
+                    keepSession = session != null && stepResultList.isEmpty();
+                    if (keepSession) {
+                        answer.setWizardSession(session.getId());
                     }
+                } else {
+                    Map<String, String> inputs = inputList.get(0);
+                    UICommands.populateController(inputs, controller, getConverterFactory());
+                    Result result = controller.execute();
+                    LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + result);
+                    answer = UICommands.createExecutionResult(context, result, false);
                 }
-                answer = UICommands.createExecutionResult(context, lastResult, canMoveToNextStep);
-                WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepValidationList, stepResultList);
-                answer.setWizardResults(wizardResultsDTO);
-            } else {
-                Map<String, String> inputs = inputList.get(0);
-                UICommands.populateController(inputs, controller, getConverterFactory());
-                Result result = controller.execute();
-                LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + result);
-                answer = UICommands.createExecutionResult(context, result, false);
-            }
-            if (answer.isCommandCompleted() && postProcessor != null) {
-                postProcessor.firePostCompleteActions(name, executionRequest, context, controller, answer, request);
+                if (answer.isCommandCompleted() && postProcessor != null) {
+                    postProcessor.firePostCompleteActions(name, executionRequest, context, controller, answer, userDetails);
+                }
+                requestContext.setCommitMessage(ExecutionRequest.createCommitMessage(name, executionRequest));
+                return Response.ok(answer).build();
+            } finally {
+                if (session != null) {
+                    session.getContext().getProvider().setOutputListener(null);
+                    session.getContext().setProgressMonitor(new DefaultUIProgressMonitor());
+                }
+                closeWizardSession(session, keepSession);
             }
-            context.setCommitMessage(ExecutionRequest.createCommitMessage(name, executionRequest));
-            return Response.ok(answer).build();
         }
     }
 
@@ -390,7 +844,7 @@ public class CommandsResource {
     @Path("/command/validate/{name}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response validateCommand(@PathParam("name") final String name, final ExecutionRequest executionRequest) throws Exception {
+    public void validateCommand(@PathParam("name") final String name, final ExecutionRequest executionRequest, @Suspended AsyncResponse asyncResponse) throws Exception {
         try {
             final UserDetails userDetails;
             if (commandCompletePostProcessor != null) {
@@ -403,7 +857,7 @@ public class CommandsResource {
             final String resourcePath = executionRequest.getResource();
             GitContext gitContext = new GitContext();
             gitContext.setRequirePull(false);
-            return withUIContext(namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
+            withUIContext(asyncResponse, namespace, projectName, resourcePath, false, new RestUIFunction<Response>() {
                 @Override
                 public Response apply(RestUIContext uiContext) throws Exception {
                     return doValidate(name, executionRequest, userDetails, uiContext);
@@ -420,88 +874,161 @@ public class CommandsResource {
      * Helper method used purely to pre-load and warm up JBoss Forge
      */
     public Response doValidate(@PathParam("name") String name, ExecutionRequest executionRequest, UserDetails userDetails, RestUIContext uiContext) throws Exception {
-        try (RestUIContext context = uiContext) {
-            UICommand command = getCommandByName(context, name);
-            if (command == null) {
-                return Response.status(Status.NOT_FOUND).build();
-            }
-            List<Map<String, String>> inputList = executionRequest.getInputList();
-            CommandController controller = createController(context, command);
-            configureAttributeMaps(userDetails, controller, executionRequest);
-            ValidationResult answer = null;
-            if (controller instanceof WizardCommandController) {
-                WizardCommandController wizardCommandController = (WizardCommandController) controller;
-                List<WizardCommandController> controllers = new ArrayList<>();
-                List<CommandInputDTO> stepPropertiesList = new ArrayList<>();
-                List<ValidationResult> stepResultList = new ArrayList<>();
-                List<ValidationResult> stepValidationList = new ArrayList<>();
-                controllers.add(wizardCommandController);
-                WizardCommandController lastController = wizardCommandController;
-                List<UIMessage> lastResult = null;
-                int page = executionRequest.wizardStep();
-                int nextPage = page + 1;
-                boolean canMoveToNextStep = false;
-                for (Map<String, String> inputs : inputList) {
-                    UICommands.populateController(inputs, lastController, getConverterFactory());
-                    CommandInputDTO stepDto = UICommands.createCommandInputDTO(context, command, lastController);
-                    stepPropertiesList.add(stepDto);
-                    canMoveToNextStep = lastController.canMoveToNextStep();
-                    boolean valid = lastController.isValid();
-                    if (!canMoveToNextStep) {
-                        // lets assume we can execute now
-                        lastResult = lastController.validate();
-                        LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
-                        ValidationResult stepResults = UICommands.createValidationResult(context, controller, lastResult);
-                        stepResultList.add(stepResults);
-                        break;
-                    } else if (!valid) {
-                        LOG.warn("Cannot move to next step as invalid despite the validation saying otherwise");
-                        break;
+        try (RestUIContext requestContext = uiContext) {
+            WizardSession session = resumeWizardSession(name, executionRequest, userDetails);
+            boolean keepSession = false;
+            try {
+                RestUIContext context = session != null ? session.getContext() : requestContext;
+                UICommand command = session != null ? session.getCommand() : getCommandByName(context, name);
+                if (command == null) {
+                    return Response.status(Status.NOT_FOUND).build();
+                }
+                List<Map<String, String>> inputList = executionRequest.getInputList();
+                CommandController controller = session != null ? session.getControllers().get(0) : createController(context, command);
+                configureAttributeMaps(userDetails, controller, executionRequest);
+                ValidationResult answer = null;
+                if (controller instanceof WizardCommandController) {
+                    WizardCommandController wizardCommandController = (WizardCommandController) controller;
+                    if (session == null) {
+                        session = wizardSessions.create(name, executionRequest, getUserName(userDetails), context, command, wizardCommandController);
                     }
-                    WizardCommandController nextController = lastController.next();
-                    if (nextController != null) {
-                        if (nextController == lastController) {
-                            LOG.warn("No idea whats going on ;)");
-                            break;
-                        }
-                        lastController = nextController;
-                        lastController.initialize();
-                        controllers.add(lastController);
+                    List<WizardCommandController> controllers;
+                    int startPage = 0;
+                    if (session != null) {
+                        controllers = session.getControllers();
+                        startPage = session.getCompletedPages();
                     } else {
-                        int i = 0;
-                        for (WizardCommandController stepController : controllers) {
-                            Map<String, String> stepControllerInputs = inputList.get(i++);
-                            UICommands.populateController(stepControllerInputs, stepController, getConverterFactory());
-                            lastResult = stepController.validate();
+                        controllers = new ArrayList<>();
+                        controllers.add(wizardCommandController);
+                    }
+                    List<CommandInputDTO> stepPropertiesList = new ArrayList<>();
+                    List<ValidationResult> stepResultList = new ArrayList<>();
+                    List<ValidationResult> stepValidationList = new ArrayList<>();
+                    for (int i = 0; i < startPage; i++) {
+                        // the pages the session has already moved past
+                        stepPropertiesList.add(UICommands.createCommandInputDTO(context, command, controllers.get(i)));
+                    }
+                    WizardCommandController lastController = controllers.get(startPage);
+                    List<UIMessage> lastResult = null;
+                    int page = executionRequest.wizardStep();
+                    int nextPage = page + 1;
+                    boolean canMoveToNextStep = false;
+                    for (Map<String, String> inputs : inputList.subList(startPage, inputList.size())) {
+                        UICommands.populateController(inputs, lastController, getConverterFactory());
+                        CommandInputDTO stepDto = UICommands.createCommandInputDTO(context, command, lastController);
+                        stepPropertiesList.add(stepDto);
+                        canMoveToNextStep = lastController.canMoveToNextStep();
+                        boolean valid = lastController.isValid();
+                        if (!canMoveToNextStep) {
+                            // lets assume we can execute now
+                            lastResult = lastController.validate();
                             LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
                             ValidationResult stepResults = UICommands.createValidationResult(context, controller, lastResult);
                             stepResultList.add(stepResults);
+                            break;
+                        } else if (!valid) {
+                            LOG.warn("Cannot move to next step as invalid despite the validation saying otherwise");
+                            break;
                         }
-                        break;
+                        WizardCommandController nextController = lastController.next();
+                        if (nextController != null) {
+                            if (nextController == lastController) {
+                                LOG.warn("No idea whats going on ;)");
+                                break;
+                            }
+                            lastController = nextController;
+                            lastController.initialize();
+                            if (session != null) {
+                                session.pageCompleted(inputs, null, lastController);
+                            } else {
+                                controllers.add(lastController);
+                            }
+                        } else {
+                            int i = 0;
+                            for (WizardCommandController stepController : controllers) {
+                                Map<String, String> stepControllerInputs = inputList.get(i++);
+                                UICommands.populateController(stepControllerInputs, stepController, getConverterFactory());
+                                lastResult = stepController.validate();
+                                LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + lastResult);
+                                ValidationResult stepResults = UICommands.createValidationResult(context, controller, lastResult);
+                                stepResultList.add(stepResults);
+                            }
+                            break;
+                        }
+                    }
+                    answer = UICommands.createValidationResult(context, controller, lastResult);
+                    // TODO do we need stepValidationList?
+                    //WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepValidationList, stepResultList);
+                    WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepResultList, new ArrayList<ExecutionResult>());
+                    answer.setWizardResults(wizardResultsDTO);
+                    keepSession = session != null;
+                    if (keepSession) {
+                        answer.setWizardSession(session.getId());
                     }
+                } else {
+                    Map<String, String> inputs = inputList.get(0);
+                    UICommands.populateController(inputs, controller, getConverterFactory());
+                    List<UIMessage> result = controller.validate();
+                    LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + result);
+                    answer = UICommands.createValidationResult(context, controller, result);
                 }
-                answer = UICommands.createValidationResult(context, controller, lastResult);
-                // TODO do we need stepValidationList?
-                //WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepValidationList, stepResultList);
-                WizardResultsDTO wizardResultsDTO = new WizardResultsDTO(stepPropertiesList, stepResultList, new ArrayList<ExecutionResult>());
-                answer.setWizardResults(wizardResultsDTO);
+                return Response.ok(answer).build();
+            } finally {
+                closeWizardSession(session, keepSession);
+            }
+        }
+    }
+
+    /**
+     * Returns the locked wizard session of the request if the pages it has moved past still have the same inputs;
+     * otherwise the wizard pages are replayed from the first page
+     */
+    protected WizardSession resumeWizardSession(String name, ExecutionRequest executionRequest, UserDetails userDetails) {
+        WizardSession session = wizardSessions.acquire(name, executionRequest, getUserName(userDetails));
+        if (session != null && session.resumePage(executionRequest.getInputList()) < 0) {
+            LOG.debug("Replaying the pages of " + session + " as the inputs of the previous pages have changed");
+            wizardSessions.close(session);
+            session = null;
+        }
+        return session;
+    }
+
+    /**
+     * Closes the wizard session of the request if it has one; for callers which will not move on to the next page
+     */
+    public void closeWizardSession(String name, ExecutionRequest executionRequest, UserDetails userDetails) {
+        closeWizardSession(wizardSessions.acquire(name, executionRequest, getUserName(userDetails)), false);
+    }
+
+    protected void closeWizardSession(WizardSession session, boolean keepSession) {
+        if (session != null) {
+            if (keepSession) {
+                wizardSessions.release(session);
             } else {
-                Map<String, String> inputs = inputList.get(0);
-                UICommands.populateController(inputs, controller, getConverterFactory());
-                List<UIMessage> result = controller.validate();
-                LOG.debug("Invoked command " + name + " with " + executionRequest + " result: " + result);
-                answer = UICommands.createValidationResult(context, controller, result);
+                wizardSessions.close(session);
             }
-            return Response.ok(answer).build();
         }
     }
 
+    protected static String getUserName(UserDetails userDetails) {
+        return userDetails != null ? userDetails.getUser() : null;
+    }
+
+    /**
+     * Returns the details of the command; from the {@link CommandIndex} if it is indexed so that the live command
+     * is only asked whether it is enabled
+     */
     protected CommandInfoDTO createCommandInfoDTO(RestUIContext context, String name) {
         CommandInfoDTO answer = null;
         if (isValidCommandName(name)) {
             UICommand command = getCommandByName(context, name);
             if (command != null) {
-                answer = UICommands.createCommandInfoDTO(context, command);
+                CommandIndexDTO indexed = commandIndex.getCommand(name);
+                if (indexed != null) {
+                    answer = indexed.toCommandInfoDTO(command.isEnabled(context));
+                } else {
+                    answer = UICommands.createCommandInfoDTO(context, command);
+                }
             }
         }
         return answer;
@@ -510,22 +1037,47 @@ public class CommandsResource {
 
 
     /**
-     * Returns true if the name is valid. Lets filter out commands which are not suitable to run inside fabric8-forge
+     * Returns true if the name is valid. Lets filter out commands which are not suitable to run inside fabric8-forge;
+     * or which are not in the {@link CommandIndex} if there is one
      */
     protected boolean isValidCommandName(String name) {
-        if (Strings.isNullOrBlank(name) || ignoreCommands.contains(name)) {
+        if (isIgnoredCommandName(name)) {
             return false;
         }
+        if (commandIndex.isEmpty()) {
+            return true;
+        }
+        CommandIndexDTO indexed = commandIndex.getCommand(name);
+        return indexed != null && !isIgnoredCommandName(indexed.getCommandName());
+    }
+
+    protected static boolean isIgnoredCommandName(String name) {
+        if (Strings.isNullOrBlank(name) || ignoreCommands.contains(name)) {
+            return true;
+        }
         for (String prefix : ignoreCommandPrefixes) {
             if (name.startsWith(prefix)) {
-                return false;
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
+    /**
+     * Returns the command of the given name; starting the addon group of the command first if it has not started yet
+     */
     protected UICommand getCommandByName(RestUIContext context, String name) {
-        return commandFactory.getCommandByName(context, name);
+        CommandIndexDTO indexed = commandIndex.getCommand(name);
+        if (indexed != null && !furnaceProducer.isAddonActive(indexed.getAddon())) {
+            furnaceProducer.activateAddonGroup(furnaceProducer.getAddonGroup(indexed.getAddon()));
+        }
+        UICommand answer = commandFactory.getCommandByName(context, name);
+        if (answer == null && commandIndex.isEmpty() && !furnaceProducer.isAllAddonGroupsActive()) {
+            // without an index an unknown command may come from an addon which has not started yet
+            furnaceProducer.activateAllAddonGroups();
+            answer = commandFactory.getCommandByName(context, name);
+        }
+        return answer;
     }
 
     protected CommandController createController(RestUIContext context, UICommand command) throws Exception {
@@ -543,36 +1095,12 @@ public class CommandsResource {
     protected <T> T withUIContext(final String namespace, final String projectName, String resourcePath, boolean write, final RestUIFunction<T> function, final GitContext gitContext) throws Exception {
         final ResourceFactory resourceFactory = getResourceFactory();
         if (Strings.isNotBlank(namespace) && Strings.isNotBlank(projectName) && resourceFactory != null) {
-            RepositoriesResource repositoriesResource = new RepositoriesResource(gitUserHelper, repositoryCache, projectFileSystem, lockManager, kubernetes);
-            repositoriesResource.setRequest(request);
-            final RepositoryResource projectResource = repositoriesResource.projectRepositoryResource(namespace, projectName);
-            if (projectResource == null) {
-                throw new NotFoundException("Could not find git project for namespace: " + namespace + " and projectName: " + projectName);
+            RepositoryResource projectResource = findProjectResource(namespace, projectName);
+            GitOperation<T> operation = createUIContextOperation(projectResource, resourceFactory, namespace, projectName, function);
+            if (write) {
+                return projectResource.gitWriteOperation(operation);
             } else {
-                GitOperation<T> operation = new GitOperation<T>() {
-                    @Override
-                    public T call(Git git, GitContext gitContext) throws Exception {
-                        Repository repository = git.getRepository();
-                        File gitDir = repository.getDirectory();
-                        File directory = gitDir.getParentFile();
-                        LOG.debug("using repository directory: " + directory.getAbsolutePath());
-                        Resource<?> selection = resourceFactory.create(directory);
-                        String cloneUrl = projectResource.getCloneUrl();
-                        try (RestUIContext context = new RestUIContext(selection, namespace, projectName, cloneUrl)) {
-                            T answer = function.apply(context);
-                            String commitMessage = context.getCommitMessage();
-                            if (Strings.isNotBlank(commitMessage)) {
-                                projectResource.setMessage(commitMessage);
-                            }
-                            return answer;
-                        }
-                    }
-                };
-                if (write) {
-                    return projectResource.gitWriteOperation(operation);
-                } else {
-                    return projectResource.gitReadOperation(operation);
-                }
+                return projectResource.gitReadOperation(operation);
             }
         } else {
             try (RestUIContext context = new RestUIContext(null)) {
@@ -581,6 +1109,77 @@ public class CommandsResource {
         }
     }
 
+    protected <T> void withUIContext(AsyncResponse asyncResponse, String namespace, String projectName, String resourcePath, boolean write, RestUIFunction<T> function) throws Exception {
+        withUIContext(asyncResponse, namespace, projectName, resourcePath, write, function, new GitContext());
+    }
+
+    protected <T> void withUIContext(AsyncResponse asyncResponse, String namespace, String projectName, String resourcePath, boolean write, RestUIFunction<T> function, GitContext gitContext) throws Exception {
+        withUIContext(request, asyncResponse, namespace, projectName, resourcePath, write, function, gitContext);
+    }
+
+    /**
+     * Performs the function on the {@link GitOperationExecutor} resuming the response with its result.
+     * <p/>
+     * The project repository is looked up on the calling thread as that uses the HTTP request.
+     */
+    protected <T> void withUIContext(HttpServletRequest servletRequest, AsyncResponse asyncResponse, final String namespace, final String projectName, String resourcePath, boolean write, final RestUIFunction<T> function, final GitContext gitContext) throws Exception {
+        final ResourceFactory resourceFactory = getResourceFactory();
+        if (Strings.isNotBlank(namespace) && Strings.isNotBlank(projectName) && resourceFactory != null) {
+            RepositoryResource projectResource = findProjectResource(servletRequest, namespace, projectName);
+            GitOperation<T> operation = createUIContextOperation(projectResource, resourceFactory, namespace, projectName, function);
+            if (write) {
+                projectResource.gitWriteOperation(asyncResponse, operation);
+            } else {
+                projectResource.gitReadOperation(asyncResponse, operation);
+            }
+        } else {
+            executor.execute(COMMANDS_WITHOUT_PROJECT, asyncResponse, new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try (RestUIContext context = new RestUIContext(null)) {
+                        return function.apply(context);
+                    }
+                }
+            });
+        }
+    }
+
+    protected RepositoryResource findProjectResource(String namespace, String projectName) throws Exception {
+        return findProjectResource(request, namespace, projectName);
+    }
+
+    protected RepositoryResource findProjectResource(HttpServletRequest servletRequest, String namespace, String projectName) throws Exception {
+        RepositoriesResource repositoriesResource = new RepositoriesResource(gitUserHelper, repositoryCache, projectFileSystem, lockManager, kubernetes, workTrees, executor, repositoryEvents);
+        repositoriesResource.setRequest(servletRequest);
+        RepositoryResource projectResource = repositoriesResource.projectRepositoryResource(namespace, projectName);
+        if (projectResource == null) {
+            throw new NotFoundException("Could not find git project for namespace: " + namespace + " and projectName: " + projectName);
+        }
+        return projectResource;
+    }
+
+    protected <T> GitOperation<T> createUIContextOperation(final RepositoryResource projectResource, final ResourceFactory resourceFactory, final String namespace, final String projectName, final RestUIFunction<T> function) {
+        return new GitOperation<T>() {
+            @Override
+            public T call(Git git, GitContext gitContext) throws Exception {
+                Repository repository = git.getRepository();
+                File gitDir = repository.getDirectory();
+                File directory = gitDir.getParentFile();
+                LOG.debug("using repository directory: " + directory.getAbsolutePath());
+                Resource<?> selection = resourceFactory.create(directory);
+                String cloneUrl = projectResource.getCloneUrl();
+                try (RestUIContext context = new RestUIContext(selection, namespace, projectName, cloneUrl)) {
+                    T answer = function.apply(context);
+                    String commitMessage = context.getCommitMessage();
+                    if (Strings.isNotBlank(commitMessage)) {
+                        projectResource.setMessage(commitMessage);
+                    }
+                    return answer;
+                }
+            }
+        };
+    }
+
 
     public RestUIContext createUIContext(File file) {
         ResourceFactory resourceFactory = getResourceFactory();
@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The metadata of a command in the command index; which lets forge list commands before their addon has started
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class CommandIndexDTO {
+    private String id;
+    private String name;
+    private String description;
+    private String category;
+    private String docLocation;
+    private String addon;
+    private String commandName;
+    private List<String> facets = new ArrayList<>();
+
+    public CommandIndexDTO() {
+    }
+
+    public CommandIndexDTO(String id, String name, String description, String category, String docLocation, String addon) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.category = category;
+        this.docLocation = docLocation;
+        this.addon = addon;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandIndexDTO{" +
+                "name='" + name + '\'' +
+                ", addon='" + addon + '\'' +
+                '}';
+    }
+
+    public CommandInfoDTO toCommandInfoDTO(boolean enabled) {
+        return new CommandInfoDTO(id, name, description, category, docLocation, enabled);
+    }
+
+    /**
+     * Returns the details of the command while its addon has not been started; which are not enabled as that is
+     * not known yet
+     */
+    public CommandInfoDTO toInactiveCommandInfoDTO() {
+        return new CommandInfoDTO(id, name, description, category, docLocation, false, true);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getDocLocation() {
+        return docLocation;
+    }
+
+    public void setDocLocation(String docLocation) {
+        this.docLocation = docLocation;
+    }
+
+    /**
+     * Returns the name of the addon which provides the command, e.g. <code>io.fabric8.forge:camel</code>
+     */
+    public String getAddon() {
+        return addon;
+    }
+
+    public void setAddon(String addon) {
+        this.addon = addon;
+    }
+
+    /**
+     * Returns the name the command is listed by in the <code>CommandFactory</code>
+     */
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public void setCommandName(String commandName) {
+        this.commandName = commandName;
+    }
+
+    /**
+     * Returns the class names of the facets the project must have for the command to be enabled
+     */
+    public List<String> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(List<String> facets) {
+        this.facets = facets;
+    }
+}
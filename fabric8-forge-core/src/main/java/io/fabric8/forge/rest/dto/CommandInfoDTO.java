@@ -25,14 +25,20 @@ public class CommandInfoDTO {
     private final String category;
     private final String docLocation;
     private final boolean enabled;
+    private final boolean inactive;
 
     public CommandInfoDTO(String id, String name, String description, String category, String docLocation, boolean enabled) {
+        this(id, name, description, category, docLocation, enabled, false);
+    }
+
+    public CommandInfoDTO(String id, String name, String description, String category, String docLocation, boolean enabled, boolean inactive) {
         this.id = id;
         this.name = name;
         this.description = description;
         this.category = category;
         this.docLocation = docLocation;
         this.enabled = enabled;
+        this.inactive = inactive;
     }
 
     @Override
@@ -68,4 +74,12 @@ public class CommandInfoDTO {
     public boolean isEnabled() {
         return enabled;
     }
+
+    /**
+     * Returns true if the addon of the command has not been started yet; so whether the command is enabled for the
+     * current selection is not known until the command itself is requested
+     */
+    public boolean isInactive() {
+        return inactive;
+    }
 }
@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The status of a command submitted to run in the background and its result once it has finished
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CommandJobDTO {
+    private final String id;
+    private final String commandName;
+    private final String status;
+    private final long created;
+    private final Long started;
+    private final Long finished;
+    private final Object result;
+    private final String error;
+
+    public CommandJobDTO(String id, String commandName, String status, long created, Long started, Long finished, Object result, String error) {
+        this.id = id;
+        this.commandName = commandName;
+        this.status = status;
+        this.created = created;
+        this.started = started;
+        this.finished = finished;
+        this.result = result;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandJobDTO{" +
+                "id='" + id + '\'' +
+                ", commandName='" + commandName + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public Long getStarted() {
+        return started;
+    }
+
+    public Long getFinished() {
+        return finished;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
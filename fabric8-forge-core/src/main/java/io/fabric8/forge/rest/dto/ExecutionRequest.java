@@ -46,6 +46,8 @@ public class ExecutionRequest {
 
     private Integer wizardStep;
 
+    private String wizardSession;
+
     /**
      * Lets generate a commit message with the command name and all the parameters we specify
      */
@@ -123,6 +125,17 @@ public class ExecutionRequest {
         this.wizardStep = wizardStep;
     }
 
+    /**
+     * Returns the token of the server side wizard session returned by the previous page if any
+     */
+    public String getWizardSession() {
+        return wizardSession;
+    }
+
+    public void setWizardSession(String wizardSession) {
+        this.wizardSession = wizardSession;
+    }
+
     /**
      * Returns the wizard step number or 0 if one is not defined
      */
@@ -28,6 +28,8 @@ public class ExecutionResult {
 	private final String err;
     private final String detail;
     private WizardResultsDTO wizardResults;
+    private String wizardSession;
+    private String outputId;
     private boolean canMoveToNextStep;
     private Map<String,String> outputProperties = new HashMap<>();
 
@@ -120,4 +122,26 @@ public class ExecutionResult {
         }
         outputProperties.put(name, value);
     }
+
+    /**
+     * Returns the token to pass in the request of the next page so that it can reuse the wizard state on the server
+     */
+    public String getWizardSession() {
+        return wizardSession;
+    }
+
+    public void setWizardSession(String wizardSession) {
+        this.wizardSession = wizardSession;
+    }
+
+    /**
+     * Returns the id to download the whole output with if the output and err only contain its tail
+     */
+    public String getOutputId() {
+        return outputId;
+    }
+
+    public void setOutputId(String outputId) {
+        this.outputId = outputId;
+    }
 }
@@ -34,6 +34,7 @@ public class PropertyDTO {
     @JsonProperty("enum")
     private final List<Object> valueChoices;
     private final List<Object> typeaheadData;
+    private Boolean completer;
 
     public PropertyDTO(String name, String description, String title, String requiredMessage, Object value, String javaType, String type, boolean enabled, boolean required, List<Object> valueChoices, List<Object> typeaheadData) {
         this.name = name;
@@ -101,4 +102,15 @@ public class PropertyDTO {
     public List<Object> getTypeaheadData() {
         return typeaheadData;
     }
+
+    /**
+     * Returns true if the input has a completer whose proposals can be looked up via the typeahead endpoint
+     */
+    public Boolean getCompleter() {
+        return completer;
+    }
+
+    public void setCompleter(Boolean completer) {
+        this.completer = completer;
+    }
 }
@@ -18,6 +18,7 @@ package io.fabric8.forge.rest.dto;
 import io.fabric8.forge.rest.ui.RestUIContext;
 import io.fabric8.forge.rest.ui.RestUIProvider;
 import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
 import org.jboss.forge.addon.convert.Converter;
 import org.jboss.forge.addon.convert.ConverterFactory;
 import org.jboss.forge.addon.projects.ProjectProvider;
@@ -51,6 +52,12 @@ import static org.jboss.forge.furnace.util.Strings.capitalize;
 /**
  */
 public class UICommands {
+    /**
+     * Whether the input DTOs include the completion proposals of inputs with completers rather than leaving the UI to
+     * look them up lazily via the typeahead endpoint
+     */
+    protected static boolean eagerCompleters = Boolean.parseBoolean(Systems.getEnvVarOrSystemProperty("FORGE_EAGER_COMPLETERS", "false"));
+
     public static CommandInfoDTO createCommandInfoDTO(RestUIContext context, UICommand command) {
         CommandInfoDTO answer;
         UICommandMetadata metadata = command.getMetadata(context);
@@ -120,18 +127,16 @@ public class UICommands {
                 enumValues.add(jsonValue);
             }
         }
+        boolean completerAvailable = false;
         if (input instanceof HasCompleter) {
             HasCompleter hasCompleter = (HasCompleter) input;
             UICompleter completer = hasCompleter.getCompleter();
             if (completer != null) {
-                Object currentValue = InputComponents.getValueFor(input);
-                String textValue = currentValue != null ? currentValue.toString() : "";
-                Iterable valueChoices = completer.getCompletionProposals(context, input, textValue);
-                // TODO is there a way to find a converter?
-                Converter converter = null;
-                for (Object valueChoice : valueChoices) {
-                    Object jsonValue = convertValueToSafeJson(converter, valueChoice);
-                    typeaheadData.add(jsonValue);
+                completerAvailable = true;
+                if (eagerCompleters) {
+                    Object currentValue = InputComponents.getValueFor(input);
+                    String textValue = currentValue != null ? currentValue.toString() : "";
+                    typeaheadData.addAll(getCompletionProposals(context, input, textValue));
                 }
             }
         }
@@ -141,7 +146,50 @@ public class UICommands {
         if (typeaheadData.isEmpty()) {
             typeaheadData = null;
         }
-        return new PropertyDTO(name, description, label, requiredMessage, value, javaType, type, enabled, required, enumValues, typeaheadData);
+        PropertyDTO answer = new PropertyDTO(name, description, label, requiredMessage, value, javaType, type, enabled, required, enumValues, typeaheadData);
+        if (completerAvailable) {
+            answer.setCompleter(true);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the JSON safe completion proposals of the input for the given text or an empty list if it has no completer
+     */
+    public static List<Object> getCompletionProposals(UIContext context, InputComponent<?, ?> input, String text) {
+        List<Object> answer = new ArrayList<>();
+        if (input instanceof HasCompleter) {
+            UICompleter completer = ((HasCompleter) input).getCompleter();
+            if (completer != null) {
+                Iterable valueChoices = completer.getCompletionProposals(context, input, text);
+                if (valueChoices != null) {
+                    // TODO is there a way to find a converter?
+                    Converter converter = null;
+                    for (Object valueChoice : valueChoices) {
+                        Object jsonValue = convertValueToSafeJson(converter, valueChoice);
+                        answer.add(jsonValue);
+                    }
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the proposals whose text starts with the given text ignoring case; up to the given limit
+     */
+    public static List<Object> filterProposals(List<Object> proposals, String text, int limit) {
+        String prefix = text != null ? text.toLowerCase() : "";
+        List<Object> answer = new ArrayList<>();
+        for (Object proposal : proposals) {
+            if (answer.size() >= limit) {
+                break;
+            }
+            if (proposal != null && proposal.toString().toLowerCase().startsWith(prefix)) {
+                answer.add(proposal);
+            }
+        }
+        return answer;
     }
 
     /**
@@ -286,7 +334,11 @@ public class UICommands {
         String message = result != null ? getResultMessage(result) : null;
         String detail = null;
         ExecutionStatus status = ExecutionStatus.SUCCESS;
-        return new ExecutionResult(status, message, out, err, detail, canMoveToNextStep);
+        ExecutionResult answer = new ExecutionResult(status, message, out, err, detail, canMoveToNextStep);
+        if (provider.isTruncated()) {
+            answer.setOutputId(provider.getOutputId());
+        }
+        return answer;
     }
 
 
@@ -297,7 +349,11 @@ public class UICommands {
         RestUIProvider provider = context.getProvider();
         String out = provider.getOut();
         String err = provider.getErr();
-        return new ValidationResult(toDtoList(messages), valid, canExecute, out, err);
+        ValidationResult answer = new ValidationResult(toDtoList(messages), valid, canExecute, out, err);
+        if (provider.isTruncated()) {
+            answer.setOutputId(provider.getOutputId());
+        }
+        return answer;
     }
 
     protected static String getResultMessage(Result result) {
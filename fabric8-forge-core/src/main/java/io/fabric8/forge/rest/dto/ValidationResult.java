@@ -26,6 +26,8 @@ public class ValidationResult {
     private final String out;
     private final String err;
     private WizardResultsDTO wizardResults;
+    private String wizardSession;
+    private String outputId;
 
     public ValidationResult(List<UIMessageDTO> messages, boolean valid, boolean canExecute, String out, String err) {
         this.messages = messages;
@@ -73,4 +75,26 @@ public class ValidationResult {
     public WizardResultsDTO getWizardResults() {
         return wizardResults;
     }
+
+    /**
+     * Returns the wizard session token the client sends back with the next validate or execute request
+     */
+    public String getWizardSession() {
+        return wizardSession;
+    }
+
+    public void setWizardSession(String wizardSession) {
+        this.wizardSession = wizardSession;
+    }
+
+    /**
+     * Returns the id of the whole output if out and err were truncated to their tails
+     */
+    public String getOutputId() {
+        return outputId;
+    }
+
+    public void setOutputId(String outputId) {
+        this.outputId = outputId;
+    }
 }
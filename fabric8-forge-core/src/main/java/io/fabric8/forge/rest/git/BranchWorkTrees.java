@@ -0,0 +1,273 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.forge.rest.main.ProjectFileSystem;
+import io.fabric8.forge.rest.main.UserDetails;
+import io.fabric8.utils.Files;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages a working copy per actively used branch of a repository so that requests for different branches can be
+ * served concurrently without switching the single working copy back and forth.
+ * <p/>
+ * The default branch is served from the main clone; any other branch gets its own working copy which shares the
+ * object store of the main clone via <code>objects/info/alternates</code>. Work trees are created on demand and
+ * removed again once they have been idle for a while.
+ */
+@Singleton
+public class BranchWorkTrees {
+    private static final transient Logger LOG = LoggerFactory.getLogger(BranchWorkTrees.class);
+    public static final String DEFAULT_BRANCH = "master";
+
+    private final ProjectFileSystem projectFileSystem;
+    private final GitLockManager lockManager;
+    private final boolean enabled;
+    private final long idleTimeoutMillis;
+    private final String defaultBranch;
+    private final Map<File, Long> lastUsed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "forge-worktree-eviction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public BranchWorkTrees(ProjectFileSystem projectFileSystem, GitLockManager lockManager, boolean enabled, int idleMinutes) {
+        this(projectFileSystem, lockManager, enabled, idleMinutes, DEFAULT_BRANCH);
+    }
+
+    /**
+     * @param defaultBranch the branch served from the main clone if the clone does not exist yet; otherwise the
+     *                      branch the main clone has checked out is used
+     */
+    @Inject
+    public BranchWorkTrees(ProjectFileSystem projectFileSystem, GitLockManager lockManager,
+                           @ConfigProperty(name = "FORGE_BRANCH_WORKTREES", defaultValue = "true") boolean enabled,
+                           @ConfigProperty(name = "FORGE_WORKTREE_IDLE_MINUTES", defaultValue = "30") int idleMinutes,
+                           @ConfigProperty(name = "FORGE_DEFAULT_BRANCH", defaultValue = DEFAULT_BRANCH) String defaultBranch) {
+        this.projectFileSystem = projectFileSystem;
+        this.lockManager = lockManager;
+        this.enabled = enabled;
+        this.defaultBranch = defaultBranch;
+        this.idleTimeoutMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        if (enabled) {
+            long period = Math.max(1, idleMinutes / 2);
+            executorService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdleWorkTrees();
+                }
+            }, period, period, TimeUnit.MINUTES);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdown();
+    }
+
+    /**
+     * Returns the folder of the working copy to use for the given branch of the project
+     */
+    public File getWorkTreeFolder(File projectFolder, String branch) {
+        if (!enabled || branch == null || Objects.equals(getDefaultBranch(projectFolder), branch)) {
+            return projectFolder;
+        }
+        File branchesFolder = new File(projectFolder.getParentFile(), "." + projectFolder.getName() + ".branches");
+        File answer = new File(branchesFolder, encodeBranchName(branch));
+        touch(answer);
+        return answer;
+    }
+
+    /**
+     * Returns the branch served from the main clone of the project; which is the branch it checked out when cloned
+     * as the main clone is never switched to another branch while work trees are enabled
+     */
+    protected String getDefaultBranch(File projectFolder) {
+        File headFile = new File(projectFolder, ".git/" + Constants.HEAD);
+        if (headFile.isFile()) {
+            try {
+                String head = new String(java.nio.file.Files.readAllBytes(headFile.toPath()), StandardCharsets.UTF_8).trim();
+                String prefix = "ref: " + Constants.R_HEADS;
+                if (head.startsWith(prefix)) {
+                    return head.substring(prefix.length());
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read " + headFile + ". " + e, e);
+            }
+        }
+        return defaultBranch;
+    }
+
+    /**
+     * Lazily creates the work tree for a branch sharing the objects of the main clone of the project
+     */
+    public void cloneWorkTreeIfNotExist(final UserDetails userDetails, final File projectFolder, final File workTreeFolder, final String cloneUrl) throws Exception {
+        touch(workTreeFolder);
+        if (Files.isDirectory(new File(workTreeFolder, ".git"))) {
+            return;
+        }
+        final File gitFolder = new File(projectFolder, ".git");
+        lockManager.withLock(gitFolder, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                projectFileSystem.cloneRepoIfNotExist(userDetails, projectFolder, cloneUrl);
+                try {
+                    createWorkTree(gitFolder, workTreeFolder, cloneUrl);
+                } catch (Exception e) {
+                    LOG.warn("Failed to create work tree " + workTreeFolder + ". " + e, e);
+                    Files.recursiveDelete(workTreeFolder);
+                    throw e;
+                }
+                return null;
+            }
+        });
+    }
+
+    protected void createWorkTree(File gitFolder, File workTreeFolder, String cloneUrl) throws Exception {
+        LOG.info("Creating work tree " + workTreeFolder + " sharing the objects of " + gitFolder);
+        String remote = projectFileSystem.getRemote();
+        Repository shared = openRepository(gitFolder);
+        Git git = Git.init().setDirectory(workTreeFolder).call();
+        try {
+            Repository repository = git.getRepository();
+            File alternates = new File(repository.getDirectory(), "objects/info/alternates");
+            alternates.getParentFile().mkdirs();
+            Files.writeToFile(alternates, (new File(gitFolder, "objects").getCanonicalPath() + "\n").getBytes());
+
+            StoredConfig config = repository.getConfig();
+            config.setString("remote", remote, "url", cloneUrl);
+            config.setString("remote", remote, "fetch", "+refs/heads/*:refs/remotes/" + remote + "/*");
+            config.save();
+
+            // the objects are shared so we only need to copy the remote tracking branches
+            String prefix = Constants.R_REMOTES + remote + "/";
+            for (Ref ref : shared.getRefDatabase().getRefs(prefix).values()) {
+                ObjectId objectId = ref.getObjectId();
+                if (objectId != null && !ref.isSymbolic()) {
+                    // the name is the full name of the remote tracking branch
+                    RefUpdate update = repository.updateRef(ref.getName());
+                    update.setNewObjectId(objectId);
+                    update.update();
+                }
+            }
+        } finally {
+            git.close();
+            shared.close();
+        }
+    }
+
+    protected void evictIdleWorkTrees() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<File, Long> entry : lastUsed.entrySet()) {
+            if (now - entry.getValue() > idleTimeoutMillis) {
+                try {
+                    evict(entry.getKey());
+                } catch (Exception e) {
+                    LOG.warn("Failed to remove idle work tree " + entry.getKey() + ". " + e, e);
+                }
+            }
+        }
+    }
+
+    protected void evict(final File workTreeFolder) throws Exception {
+        final File gitFolder = new File(workTreeFolder, ".git");
+        lockManager.withLock(gitFolder, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Long time = lastUsed.get(workTreeFolder);
+                if (time == null || System.currentTimeMillis() - time <= idleTimeoutMillis) {
+                    // used again while we were waiting for the lock
+                    return null;
+                }
+                if (Files.isDirectory(gitFolder) && hasUnpushedCommits(gitFolder)) {
+                    LOG.warn("Not removing idle work tree " + workTreeFolder + " as it has commits which are not pushed");
+                    return null;
+                }
+                LOG.info("Removing idle work tree " + workTreeFolder);
+                Files.recursiveDelete(workTreeFolder);
+                lastUsed.remove(workTreeFolder);
+                return null;
+            }
+        });
+    }
+
+    protected boolean hasUnpushedCommits(File gitFolder) throws IOException {
+        String remote = projectFileSystem.getRemote();
+        Repository repository = openRepository(gitFolder);
+        try {
+            for (Ref ref : repository.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+                Ref remoteRef = repository.getRef(Constants.R_REMOTES + remote + "/" + Repository.shortenRefName(ref.getName()));
+                if (remoteRef == null || !Objects.equals(remoteRef.getObjectId(), ref.getObjectId())) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            repository.close();
+        }
+    }
+
+    protected void touch(File workTreeFolder) {
+        lastUsed.put(workTreeFolder, System.currentTimeMillis());
+    }
+
+    protected static Repository openRepository(File gitFolder) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(gitFolder).readEnvironment().build();
+    }
+
+    protected static String encodeBranchName(String branch) {
+        try {
+            return URLEncoder.encode(branch, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
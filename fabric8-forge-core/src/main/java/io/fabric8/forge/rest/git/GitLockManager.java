@@ -21,9 +21,10 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -33,10 +34,12 @@ import java.util.concurrent.locks.ReentrantLock;
 public class GitLockManager {
     private static final transient Logger LOG = LoggerFactory.getLogger(GitLockManager.class);
 
-    private Map<String, ReentrantLock> locks = new HashMap<>();
+    private ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private Map<String, Long> lastUsed = new ConcurrentHashMap<>();
 
     public <T> T withLock(File gitFolder, Callable<T> block) throws Exception {
-        ReentrantLock lock = getLock(gitFolder);
+        String key = gitFolder.getCanonicalPath();
+        ReentrantLock lock = getLock(key);
         lock.lock();
         try {
             if (LOG.isDebugEnabled()) {
@@ -44,6 +47,7 @@ public class GitLockManager {
             }
             return block.call();
         } finally {
+            lastUsed.put(key, System.currentTimeMillis());
             lock.unlock();
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Ended lock for " + gitFolder + " instance " + lock);
@@ -51,15 +55,24 @@ public class GitLockManager {
         }
     }
 
-    private ReentrantLock getLock(File gitFolder) throws IOException {
-        String key = gitFolder.getCanonicalPath();
-        synchronized (locks) {
-            ReentrantLock answer = locks.get(key);
+    /**
+     * Returns the time the lock for the given folder was last released or 0 if it has not been used yet
+     */
+    public long getLastUsed(File gitFolder) throws IOException {
+        Long answer = lastUsed.get(gitFolder.getCanonicalPath());
+        return answer != null ? answer : 0;
+    }
+
+    private ReentrantLock getLock(String key) {
+        // no monitors here so that virtual threads waiting for a repository do not pin their carrier thread
+        ReentrantLock answer = locks.get(key);
+        if (answer == null) {
+            ReentrantLock lock = new ReentrantLock();
+            answer = locks.putIfAbsent(key, lock);
             if (answer == null) {
-                answer = new ReentrantLock();
-                locks.put(key, answer);
+                answer = lock;
             }
-            return answer;
         }
+        return answer;
     }
 }
@@ -0,0 +1,247 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking git and command work of the REST resources on a bounded pool of threads so that the servlet
+ * threads are released as soon as the request has been parsed.
+ * <p/>
+ * The number of queued or running operations per repository is limited, well below the number of threads, so that a
+ * single busy repository cannot fill the queue or tie up every thread waiting on its lock; requests which cannot be
+ * queued or which time out while still queued get a 503 response so clients can retry. An operation which times out
+ * once it has started keeps running, as it may already have committed or pushed, so its client gets a 504 response
+ * without a <code>Retry-After</code> header.
+ * <p/>
+ * On JVMs which support virtual threads <code>FORGE_GIT_VIRTUAL_THREADS</code> runs each operation on its own
+ * virtual thread instead; so thousands of operations blocked on network I/O or repository locks do not need
+ * thousands of platform threads.
+ */
+@Singleton
+public class GitOperationExecutor {
+    private static final transient Logger LOG = LoggerFactory.getLogger(GitOperationExecutor.class);
+    public static final String RETRY_AFTER_SECONDS = "5";
+
+    private final ExecutorService executorService;
+    private final int maxPerRepository;
+    private final long timeoutSeconds;
+    private final ConcurrentMap<String, AtomicInteger> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+    private final boolean virtualThreads;
+
+    public GitOperationExecutor(int threads, int queueSize, int maxPerRepository, long timeoutSeconds) {
+        this(threads, queueSize, maxPerRepository, timeoutSeconds, false, 0);
+    }
+
+    /**
+     * @param virtualThreads  whether to run each operation on its own virtual thread if the JVM supports them
+     * @param maxVirtualTasks the maximum number of operations in flight when using virtual threads
+     */
+    @Inject
+    public GitOperationExecutor(@ConfigProperty(name = "FORGE_GIT_THREADS", defaultValue = "20") int threads,
+                                @ConfigProperty(name = "FORGE_GIT_QUEUE_SIZE", defaultValue = "200") int queueSize,
+                                @ConfigProperty(name = "FORGE_GIT_MAX_PER_REPOSITORY", defaultValue = "4") int maxPerRepository,
+                                @ConfigProperty(name = "FORGE_GIT_TIMEOUT_SECONDS", defaultValue = "300") long timeoutSeconds,
+                                @ConfigProperty(name = "FORGE_GIT_VIRTUAL_THREADS", defaultValue = "false") boolean virtualThreads,
+                                @ConfigProperty(name = "FORGE_GIT_MAX_VIRTUAL_TASKS", defaultValue = "5000") int maxVirtualTasks) {
+        this.maxPerRepository = maxPerRepository;
+        this.timeoutSeconds = timeoutSeconds;
+        ExecutorService virtualExecutor = virtualThreads ? createVirtualThreadExecutorService() : null;
+        this.virtualThreads = virtualExecutor != null;
+        if (virtualExecutor != null) {
+            this.executorService = virtualExecutor;
+            this.maxInFlight = maxVirtualTasks;
+            LOG.info("Running git operations on virtual threads with at most " + maxVirtualTasks + " in flight and "
+                    + maxPerRepository + " per repository timing out after " + timeoutSeconds + " seconds");
+        } else {
+            if (virtualThreads) {
+                LOG.warn("Virtual threads are not supported by this JVM " + System.getProperty("java.version") + " so using a thread pool");
+            }
+            if (maxPerRepository >= threads) {
+                LOG.warn("FORGE_GIT_MAX_PER_REPOSITORY of " + maxPerRepository + " is not below FORGE_GIT_THREADS of " + threads
+                        + " so operations waiting on the lock of a single repository can use every thread");
+            }
+            this.executorService = createExecutorService(threads, queueSize);
+            this.maxInFlight = 0;
+            LOG.info("Running git operations on " + threads + " threads with a queue of " + queueSize + " and at most "
+                    + maxPerRepository + " per repository timing out after " + timeoutSeconds + " seconds");
+        }
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread per task or null if the JVM does not support them
+     */
+    protected static ExecutorService createVirtualThreadExecutorService() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            LOG.warn("Failed to create a virtual thread executor: " + e, e);
+            return null;
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    protected ExecutorService createExecutorService(int threads, int queueSize) {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "forge-git-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    /**
+     * Invokes the task asynchronously resuming the response with its result; which can be a {@link Response},
+     * an entity or an exception
+     *
+     * @param key the key of the repository the task works on or the kind of task if there is no repository
+     */
+    public <T> void execute(final String key, final AsyncResponse asyncResponse, final Callable<T> task) {
+        final AtomicInteger counter = acquirePendingCounter(key);
+        if (counter.get() > maxPerRepository) {
+            release(key, counter, false);
+            LOG.warn("Rejecting request for " + key + " as it already has " + maxPerRepository + " pending operations");
+            asyncResponse.resume(createUnavailableResponse("Too many pending operations on " + key));
+            return;
+        }
+        if (maxInFlight > 0 && inFlight.incrementAndGet() > maxInFlight) {
+            // virtual threads have no queue to bound so lets bound the number of operations in flight instead
+            inFlight.decrementAndGet();
+            release(key, counter, false);
+            LOG.warn("Rejecting request for " + key + " as there are already " + maxInFlight + " operations in flight");
+            asyncResponse.resume(createUnavailableResponse("The server is too busy"));
+            return;
+        }
+        // set by whichever comes first of the task starting or timing out while it is queued
+        final AtomicBoolean claimed = new AtomicBoolean();
+        if (timeoutSeconds > 0) {
+            asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+                @Override
+                public void handleTimeout(AsyncResponse response) {
+                    if (claimed.compareAndSet(false, true)) {
+                        LOG.warn("Timed out waiting for an operation on " + key + " to start after " + timeoutSeconds + " seconds");
+                        response.resume(createUnavailableResponse("Timed out waiting for the operation on " + key));
+                    } else {
+                        LOG.warn("Timed out waiting for a running operation on " + key + " after " + timeoutSeconds + " seconds");
+                        response.resume(Response.status(Response.Status.GATEWAY_TIMEOUT).type(MediaType.TEXT_PLAIN)
+                                .entity("Timed out waiting for the running operation on " + key + " which may still complete").build());
+                    }
+                }
+            });
+            asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        }
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!claimed.compareAndSet(false, true) || asyncResponse.isDone() || asyncResponse.isCancelled()) {
+                            // timed out or the client went away while this was queued
+                            return;
+                        }
+                        asyncResponse.resume(task.call());
+                    } catch (Throwable e) {
+                        LOG.warn("Failed to perform operation on " + key + ". " + e, e);
+                        asyncResponse.resume(e);
+                    } finally {
+                        release(key, counter, true);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(key, counter, true);
+            LOG.warn("Rejecting request for " + key + " as the git operation queue is full");
+            asyncResponse.resume(createUnavailableResponse("The server is too busy"));
+        }
+    }
+
+    protected void release(String key, AtomicInteger counter, boolean releaseInFlight) {
+        if (counter.decrementAndGet() <= 0) {
+            // lets not keep a counter for every repository which has ever been used
+            pending.remove(key, counter);
+        }
+        if (releaseInFlight && maxInFlight > 0) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * Returns the incremented pending counter of the key; retrying if the counter was removed from the map by
+     * {@link #release} in the meantime so that the count is not lost
+     */
+    protected AtomicInteger acquirePendingCounter(String key) {
+        while (true) {
+            AtomicInteger answer = pending.get(key);
+            if (answer == null) {
+                AtomicInteger counter = new AtomicInteger();
+                answer = pending.putIfAbsent(key, counter);
+                if (answer == null) {
+                    answer = counter;
+                }
+            }
+            answer.incrementAndGet();
+            if (pending.get(key) == answer) {
+                return answer;
+            }
+            answer.decrementAndGet();
+        }
+    }
+
+    protected static Response createUnavailableResponse(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", RETRY_AFTER_SECONDS)
+                .type(MediaType.TEXT_PLAIN).entity(message).build();
+    }
+}
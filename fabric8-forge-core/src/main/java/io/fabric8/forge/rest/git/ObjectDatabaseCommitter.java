@@ -0,0 +1,305 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import org.eclipse.jgit.api.CheckoutCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Creates commits directly in the object database of a repository without touching the working copy or index.
+ * <p/>
+ * Blobs and trees are written via an {@link ObjectInserter} and an in-core {@link DirCache} and the branch is then
+ * moved with a compare-and-swap {@link RefUpdate}; so concurrent writers to the same repository only contend on the
+ * final ref update and writers to different branches never block each other.
+ * <p/>
+ * If the branch is checked out in the working copy then moving it leaves the index and working copy behind; so
+ * callers should then use {@link #refreshWorkTree} while holding the lock of the repository.
+ */
+public class ObjectDatabaseCommitter {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ObjectDatabaseCommitter.class);
+
+    private final Repository repository;
+
+    public ObjectDatabaseCommitter(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Commits the given file contents on the branch
+     *
+     * @param branch         the local branch name to commit to
+     * @param startPoint     the commit to start from if the local branch does not exist yet; may be null
+     * @param path           the path of the file relative to the root of the repository
+     * @param contents       the new contents of the file or null to remove the file
+     * @param author         the author and committer of the new commit
+     * @param message        the commit message
+     * @param expectedParent if not null then the commit is only created if the branch currently points at this commit
+     * @return the new commit
+     * @throws ConcurrentRefUpdateException if the branch does not point at the expected parent or was moved by another writer
+     */
+    public RevCommit commitFile(String branch, ObjectId startPoint, String path, byte[] contents, PersonIdent author, String message, ObjectId expectedParent) throws IOException, ConcurrentRefUpdateException {
+        Map<String, byte[]> changes = new HashMap<>();
+        changes.put(path, contents);
+        return commitFiles(branch, startPoint, changes, author, message, expectedParent);
+    }
+
+    /**
+     * Commits the given changes to a number of files on the branch as a single commit
+     *
+     * @param changes the new contents of each changed file keyed by path; a null value removes the file
+     * @see #commitFile(String, ObjectId, String, byte[], PersonIdent, String, ObjectId)
+     */
+    public RevCommit commitFiles(String branch, ObjectId startPoint, Map<String, byte[]> changes, PersonIdent author, String message, ObjectId expectedParent) throws IOException, ConcurrentRefUpdateException {
+        String refName = Constants.R_HEADS + branch;
+        Ref ref = repository.getRef(refName);
+        ObjectId oldId = ref != null ? ref.getObjectId() : null;
+        ObjectId parentId = oldId != null ? oldId : startPoint;
+        if (expectedParent != null && !Objects.equals(expectedParent, parentId)) {
+            throw new ConcurrentRefUpdateException("Branch " + branch + " is at " + name(parentId) + " but expected " + expectedParent.getName(), ref, RefUpdate.Result.LOCK_FAILURE);
+        }
+
+        ObjectInserter inserter = repository.newObjectInserter();
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk revWalk = new RevWalk(reader);
+        try {
+            DirCache index = DirCache.newInCore();
+            DirCacheBuilder builder = index.builder();
+            // the modes of the files being replaced so that executable files stay executable
+            Map<String, FileMode> replacedModes = new HashMap<>();
+            if (parentId != null) {
+                RevCommit parent = revWalk.parseCommit(parentId);
+                TreeWalk treeWalk = new TreeWalk(reader);
+                try {
+                    treeWalk.addTree(parent.getTree());
+                    treeWalk.setRecursive(true);
+                    while (treeWalk.next()) {
+                        String entryPath = treeWalk.getPathString();
+                        if (changes.containsKey(entryPath)) {
+                            FileMode mode = treeWalk.getFileMode(0);
+                            if (mode.getObjectType() == Constants.OBJ_BLOB) {
+                                replacedModes.put(entryPath, mode);
+                            }
+                            continue;
+                        }
+                        DirCacheEntry entry = new DirCacheEntry(entryPath);
+                        entry.setFileMode(treeWalk.getFileMode(0));
+                        entry.setObjectId(treeWalk.getObjectId(0));
+                        builder.add(entry);
+                    }
+                } finally {
+                    treeWalk.close();
+                }
+            }
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                byte[] contents = change.getValue();
+                if (contents != null) {
+                    DirCacheEntry entry = new DirCacheEntry(change.getKey());
+                    FileMode mode = replacedModes.get(change.getKey());
+                    entry.setFileMode(mode != null ? mode : FileMode.REGULAR_FILE);
+                    entry.setLength(contents.length);
+                    entry.setLastModified(System.currentTimeMillis());
+                    entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, contents));
+                    builder.add(entry);
+                }
+            }
+            builder.finish();
+            ObjectId treeId = index.writeTree(inserter);
+
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(treeId);
+            if (parentId != null) {
+                commit.setParentId(parentId);
+            }
+            commit.setAuthor(author);
+            commit.setCommitter(author);
+            commit.setMessage(message);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            RefUpdate update = repository.updateRef(refName);
+            update.setNewObjectId(commitId);
+            update.setExpectedOldObjectId(oldId != null ? oldId : ObjectId.zeroId());
+            update.setRefLogIdent(author);
+            update.setRefLogMessage("commit: " + firstLine(message), false);
+            RefUpdate.Result result = update.update(revWalk);
+            switch (result) {
+                case NEW:
+                case FAST_FORWARD:
+                case FORCED:
+                    break;
+                default:
+                    throw new ConcurrentRefUpdateException("Could not update " + refName + " from " + name(oldId) + " to " + commitId.getName(), ref, result);
+            }
+            RevCommit answer = revWalk.parseCommit(commitId);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Committed " + answer.getName() + " on " + refName + " without a working copy: " + result);
+            }
+            return answer;
+        } finally {
+            revWalk.close();
+            reader.close();
+            inserter.close();
+        }
+    }
+
+    /**
+     * Returns true if the branch is the one checked out in the working copy of the repository
+     */
+    public boolean isCheckedOut(String branch) throws IOException {
+        return Objects.equals(Constants.R_HEADS + branch, repository.getFullBranch());
+    }
+
+    /**
+     * Fast forwards the local branch to the given commit, such as the remote tracking branch after a fetch, so that
+     * new commits are made on top of it. Does nothing if the branch does not exist or has commits which are not
+     * in the given commit.
+     * <p/>
+     * If the branch is checked out then the index and working copy are updated too; so the caller must hold the lock
+     * of the repository.
+     *
+     * @return true if the branch was moved
+     */
+    public boolean fastForward(String branch, ObjectId commitId) throws IOException, GitAPIException {
+        String refName = Constants.R_HEADS + branch;
+        Ref ref = repository.getRef(refName);
+        if (commitId == null || ref == null || ref.getObjectId() == null || Objects.equals(commitId, ref.getObjectId())) {
+            return false;
+        }
+        ObjectId oldId = ref.getObjectId();
+        RevWalk revWalk = new RevWalk(repository);
+        try {
+            if (!revWalk.isMergedInto(revWalk.parseCommit(oldId), revWalk.parseCommit(commitId))) {
+                return false;
+            }
+        } finally {
+            revWalk.close();
+        }
+        if (isCheckedOut(branch)) {
+            MergeResult result = new Git(repository).merge().include(commitId).setFastForward(MergeCommand.FastForwardMode.FF_ONLY).call();
+            if (!result.getMergeStatus().isSuccessful()) {
+                LOG.warn("Could not fast forward " + refName + " to " + commitId.getName() + ": " + result.getMergeStatus());
+                return false;
+            }
+            return true;
+        }
+        RefUpdate update = repository.updateRef(refName);
+        update.setNewObjectId(commitId);
+        update.setExpectedOldObjectId(oldId);
+        update.setRefLogMessage("fast forward", false);
+        RefUpdate.Result result = update.update();
+        return result == RefUpdate.Result.FAST_FORWARD;
+    }
+
+    /**
+     * Moves the branch back to the parent of the given commit, such as when the push of the commit was rejected
+     *
+     * @return true if the branch was moved
+     */
+    public boolean undoCommit(String branch, RevCommit commit) throws IOException {
+        if (commit.getParentCount() == 0) {
+            return false;
+        }
+        RefUpdate update = repository.updateRef(Constants.R_HEADS + branch);
+        update.setNewObjectId(commit.getParent(0));
+        update.setExpectedOldObjectId(commit);
+        update.setForceUpdate(true);
+        update.setRefLogMessage("undo commit: " + commit.getName(), false);
+        RefUpdate.Result result = update.update();
+        return result == RefUpdate.Result.FORCED || result == RefUpdate.Result.FAST_FORWARD;
+    }
+
+    /**
+     * Updates the index and working copy entries of the given paths to match the HEAD commit; used once the checked
+     * out branch has been moved by {@link #commitFiles} or {@link #undoCommit} so the caller must hold the lock of
+     * the repository.
+     */
+    public void refreshWorkTree(Collection<String> paths) throws IOException, GitAPIException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        Git git = new Git(repository);
+        ResetCommand reset = git.reset().setRef(Constants.HEAD);
+        CheckoutCommand checkout = git.checkout();
+        for (String path : paths) {
+            reset.addPath(path);
+            checkout.addPath(path);
+        }
+        reset.call();
+        checkout.call();
+
+        // files which are no longer in HEAD are removed from the index by the reset but left in the working copy
+        ObjectId headId = repository.resolve(Constants.HEAD);
+        RevWalk revWalk = new RevWalk(repository);
+        try {
+            RevCommit head = headId != null ? revWalk.parseCommit(headId) : null;
+            for (String path : paths) {
+                TreeWalk treeWalk = head != null ? TreeWalk.forPath(repository, path, head.getTree()) : null;
+                if (treeWalk != null) {
+                    treeWalk.close();
+                    continue;
+                }
+                File file = new File(repository.getWorkTree(), path);
+                if (file.isFile() && !file.delete()) {
+                    LOG.warn("Could not delete " + file.getPath());
+                }
+            }
+        } finally {
+            revWalk.close();
+        }
+    }
+
+    protected static String firstLine(String message) {
+        if (message == null) {
+            return "";
+        }
+        int idx = message.indexOf('\n');
+        return idx >= 0 ? message.substring(0, idx) : message;
+    }
+
+    protected static String name(ObjectId objectId) {
+        return objectId != null ? objectId.getName() : "<none>";
+    }
+}
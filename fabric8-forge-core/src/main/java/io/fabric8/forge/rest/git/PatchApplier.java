@@ -0,0 +1,238 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.forge.rest.git.dto.RangeEditDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies a patch to the content of a text file; either a unified diff or a list of line {@link RangeEditDTO}s.
+ * <p/>
+ * Patches are made against a known version of the file so they must apply exactly; there is no fuzzy matching of
+ * the context lines. Lines keep their terminators so CRLF line endings and a missing final new line are preserved.
+ */
+public abstract class PatchApplier {
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+    private static final int BINARY_CHECK_SIZE = 8000;
+
+    /**
+     * Returns the patched content
+     */
+    public abstract byte[] apply(byte[] base) throws PatchException;
+
+    public static PatchApplier unifiedDiff(final String patch) {
+        return new PatchApplier() {
+            @Override
+            public byte[] apply(byte[] base) throws PatchException {
+                return toBytes(applyUnifiedDiff(toLines(base), patch));
+            }
+        };
+    }
+
+    public static PatchApplier rangeEdits(final List<RangeEditDTO> edits) {
+        return new PatchApplier() {
+            @Override
+            public byte[] apply(byte[] base) throws PatchException {
+                return toBytes(applyRangeEdits(toLines(base), edits));
+            }
+        };
+    }
+
+    protected static List<String> applyUnifiedDiff(List<String> lines, String patch) throws PatchException {
+        if (patch == null) {
+            throw new PatchException("No patch");
+        }
+        List<String> patchLines = splitLines(patch);
+        List<String> result = new ArrayList<>();
+        int position = 0;
+        int hunks = 0;
+        int i = 0;
+        while (i < patchLines.size()) {
+            String header = patchLines.get(i++);
+            if (!header.startsWith("@@")) {
+                // lets ignore the diff, index and file name headers
+                continue;
+            }
+            Matcher matcher = HUNK_HEADER.matcher(header);
+            if (!matcher.find()) {
+                throw new PatchException("Invalid hunk header: " + header.trim());
+            }
+            hunks++;
+            int oldStart = Integer.parseInt(matcher.group(1));
+            int oldCount = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+            int newCount = matcher.group(4) != null ? Integer.parseInt(matcher.group(4)) : 1;
+
+            // an empty old range starts after the given line
+            int hunkStart = oldCount == 0 ? oldStart : oldStart - 1;
+            if (hunkStart < position || hunkStart > lines.size()) {
+                throw new PatchException("Hunk " + header.trim() + " overlaps the previous hunk or is beyond the end of the file");
+            }
+            result.addAll(lines.subList(position, hunkStart));
+            position = hunkStart;
+
+            int oldLines = 0;
+            int newLines = 0;
+            while (i < patchLines.size() && (oldLines < oldCount || newLines < newCount)) {
+                String line = patchLines.get(i++);
+                if (line.startsWith("\\")) {
+                    // "\ No newline at end of file" is handled with the line it follows
+                    continue;
+                }
+                char type;
+                String text;
+                if (line.startsWith("\n") || line.startsWith("\r\n")) {
+                    // some editors strip the space of empty context lines
+                    type = ' ';
+                    text = line;
+                } else {
+                    type = line.charAt(0);
+                    text = line.substring(1);
+                }
+                boolean noNewLine = i < patchLines.size() && patchLines.get(i).startsWith("\\");
+                if (noNewLine) {
+                    text = stripNewLine(text);
+                } else if (!text.endsWith("\n")) {
+                    text += "\n";
+                }
+                switch (type) {
+                    case ' ':
+                        expectLine(lines, position, text);
+                        result.add(lines.get(position++));
+                        oldLines++;
+                        newLines++;
+                        break;
+                    case '-':
+                        expectLine(lines, position, text);
+                        position++;
+                        oldLines++;
+                        break;
+                    case '+':
+                        result.add(text);
+                        newLines++;
+                        break;
+                    default:
+                        throw new PatchException("Invalid line in hunk " + header.trim() + ": " + line.trim());
+                }
+            }
+            if (oldLines != oldCount || newLines != newCount) {
+                throw new PatchException("Hunk " + header.trim() + " is truncated");
+            }
+        }
+        if (hunks == 0) {
+            throw new PatchException("No hunks found in the patch");
+        }
+        result.addAll(lines.subList(position, lines.size()));
+        return result;
+    }
+
+    protected static List<String> applyRangeEdits(List<String> lines, List<RangeEditDTO> edits) throws PatchException {
+        if (edits == null || edits.isEmpty()) {
+            throw new PatchException("No edits");
+        }
+        List<RangeEditDTO> sorted = new ArrayList<>(edits);
+        Collections.sort(sorted, new Comparator<RangeEditDTO>() {
+            @Override
+            public int compare(RangeEditDTO edit1, RangeEditDTO edit2) {
+                return Integer.compare(edit1.getStart(), edit2.getStart());
+            }
+        });
+        List<String> result = new ArrayList<>();
+        int position = 0;
+        for (RangeEditDTO edit : sorted) {
+            int start = edit.getStart();
+            int end = edit.getEnd();
+            if (start < position || end < start || end > lines.size()) {
+                throw new PatchException("Invalid edit of lines " + start + " to " + end + " of a file with " + lines.size() + " lines");
+            }
+            result.addAll(lines.subList(position, start));
+            String text = edit.getText();
+            if (text != null && text.length() > 0) {
+                result.add(text);
+            }
+            position = end;
+        }
+        result.addAll(lines.subList(position, lines.size()));
+        return result;
+    }
+
+    protected static void expectLine(List<String> lines, int position, String text) throws PatchException {
+        if (position >= lines.size()) {
+            throw new PatchException("The patch expects line " + (position + 1) + " but the file only has " + lines.size() + " lines");
+        }
+        if (!lines.get(position).equals(text)) {
+            throw new PatchException("Line " + (position + 1) + " does not match the patch");
+        }
+    }
+
+    protected static List<String> toLines(byte[] content) throws PatchException {
+        int length = Math.min(content.length, BINARY_CHECK_SIZE);
+        for (int i = 0; i < length; i++) {
+            if (content[i] == 0) {
+                throw new PatchException("Cannot patch a binary file");
+            }
+        }
+        return splitLines(new String(content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Splits the text into lines which keep their line terminator
+     */
+    protected static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int idx = text.indexOf('\n', start);
+            if (idx < 0) {
+                lines.add(text.substring(start));
+                break;
+            }
+            lines.add(text.substring(start, idx + 1));
+            start = idx + 1;
+        }
+        return lines;
+    }
+
+    protected static String stripNewLine(String text) {
+        if (text.endsWith("\n")) {
+            return text.substring(0, text.length() - 1);
+        }
+        return text;
+    }
+
+    protected static byte[] toBytes(List<String> lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Thrown if the patch is invalid or does not match the content it is applied to
+     */
+    public static class PatchException extends Exception {
+        public PatchException(String message) {
+            super(message);
+        }
+    }
+}
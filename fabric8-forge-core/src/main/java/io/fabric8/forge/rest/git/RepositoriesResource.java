@@ -70,17 +70,23 @@ public class RepositoriesResource {
     private final ProjectFileSystem projectFileSystem;
     private final GitLockManager lockManager;
     private final KubernetesClient kubernetes;
+    private final BranchWorkTrees workTrees;
+    private final GitOperationExecutor executor;
+    private final RepositoryEvents repositoryEvents;
 
     @Context
     private HttpServletRequest request;
 
     @Inject
-    public RepositoriesResource(GitUserHelper gitUserHelper, RepositoryCache repositoryCache, ProjectFileSystem projectFileSystem, GitLockManager lockManager, KubernetesClient kubernetes) {
+    public RepositoriesResource(GitUserHelper gitUserHelper, RepositoryCache repositoryCache, ProjectFileSystem projectFileSystem, GitLockManager lockManager, KubernetesClient kubernetes, BranchWorkTrees workTrees, GitOperationExecutor executor, RepositoryEvents repositoryEvents) {
         this.gitUserHelper = gitUserHelper;
         this.repositoryCache = repositoryCache;
         this.projectFileSystem = projectFileSystem;
         this.lockManager = lockManager;
         this.kubernetes = kubernetes;
+        this.workTrees = workTrees;
+        this.executor = executor;
+        this.repositoryEvents = repositoryEvents;
     }
 
     @GET
@@ -124,9 +130,13 @@ public class RepositoriesResource {
         //File projectFolder = projectFileSystem.cloneOrPullProjectFolder(userId, repositoryName, userDetails);
         File projectFolder = projectFileSystem.getUserProjectFolder(userId, repositoryName);
         String cloneUrl = projectFileSystem.getCloneUrl(userId, repositoryName, userDetails);
-        File gitFolder = new File(projectFolder, ".git");
+        File workTreeFolder = workTrees.getWorkTreeFolder(projectFolder, branch);
+        File gitFolder = new File(workTreeFolder, ".git");
         String remoteRepository = userId + "/" + repositoryName;
-        RepositoryResource resource = new RepositoryResource(projectFolder, gitFolder, userDetails, origin, branch, remoteRepository, lockManager, projectFileSystem, cloneUrl, objectId);
+        RepositoryResource resource = new RepositoryResource(workTreeFolder, gitFolder, userDetails, origin, branch, remoteRepository, lockManager, projectFileSystem, cloneUrl, objectId);
+        resource.setWorkTree(workTrees, projectFolder);
+        resource.setExecutor(executor);
+        resource.setRepositoryEvents(repositoryEvents);
         try {
             String message = request.getParameter("message");
             if (Strings.isNotBlank(message)) {
@@ -189,9 +199,13 @@ public class RepositoriesResource {
 
 
         String cloneUrl = uri;
-        File gitFolder = new File(projectFolder, ".git");
+        File workTreeFolder = workTrees.getWorkTreeFolder(projectFolder, branch);
+        File gitFolder = new File(workTreeFolder, ".git");
         LOG.debug("Cloning " + cloneUrl);
-        RepositoryResource resource = new RepositoryResource(projectFolder, gitFolder, userDetails, origin, branch, remoteRepository, lockManager, projectFileSystem, cloneUrl, objectId);
+        RepositoryResource resource = new RepositoryResource(workTreeFolder, gitFolder, userDetails, origin, branch, remoteRepository, lockManager, projectFileSystem, cloneUrl, objectId);
+        resource.setWorkTree(workTrees, projectFolder);
+        resource.setExecutor(executor);
+        resource.setRepositoryEvents(repositoryEvents);
         if (sourceSecretName != null) {
             try {
                 Secret secret = osClient.secrets().inNamespace(secretNamespace).withName(sourceSecretName).get();
@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import java.io.File;
+
+/**
+ * Describes a change to a branch of a cached clone
+ */
+public class RepositoryEvent {
+    public enum Type {
+        /**
+         * A push to the upstream repository was received so the clone is now out of date
+         */
+        PUSHED,
+        /**
+         * The clone has been updated with the latest changes from the upstream repository
+         */
+        UPDATED,
+        /**
+         * Forge committed to the clone on behalf of a user or a command
+         */
+        COMMITTED
+    }
+
+    private final Type type;
+    private final String repository;
+    private final File gitFolder;
+    private final String branch;
+    private final String commitId;
+    private final long timestamp = System.currentTimeMillis();
+
+    public RepositoryEvent(Type type, String repository, File gitFolder, String branch, String commitId) {
+        this.type = type;
+        this.repository = repository;
+        this.gitFolder = gitFolder;
+        this.branch = branch;
+        this.commitId = commitId;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryEvent{" +
+                "type=" + type +
+                ", repository='" + repository + '\'' +
+                ", branch='" + branch + '\'' +
+                ", commitId='" + commitId + '\'' +
+                ", gitFolder=" + gitFolder +
+                '}';
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the <code>owner/name</code> of the upstream repository
+     */
+    public String getRepository() {
+        return repository;
+    }
+
+    public File getGitFolder() {
+        return gitFolder;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
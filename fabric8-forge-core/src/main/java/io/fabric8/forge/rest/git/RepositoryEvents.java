@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.utils.Strings;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifies listeners of changes to the cached clones and keeps track of which clones have been brought up to date
+ * by a push webhook; so that reads of those clones can skip the pull from the upstream repository.
+ */
+@Singleton
+public class RepositoryEvents {
+    private static final transient Logger LOG = LoggerFactory.getLogger(RepositoryEvents.class);
+
+    private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<File, Long> syncTimes = new ConcurrentHashMap<>();
+    private final long syncMillis;
+
+    /**
+     * @param syncSeconds how long reads trust a clone updated by a webhook without pulling; 0 disables it
+     */
+    @Inject
+    public RepositoryEvents(@ConfigProperty(name = "FORGE_WEBHOOK_SYNC_SECONDS", defaultValue = "300") int syncSeconds) {
+        this.syncMillis = TimeUnit.SECONDS.toMillis(syncSeconds);
+    }
+
+    public void addListener(RepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void fireEvent(RepositoryEvent event) {
+        if (event.getType() == RepositoryEvent.Type.PUSHED) {
+            syncTimes.remove(event.getGitFolder());
+        } else if (event.getType() == RepositoryEvent.Type.UPDATED) {
+            syncTimes.put(event.getGitFolder(), event.getTimestamp());
+        }
+        for (RepositoryListener listener : listeners) {
+            try {
+                listener.onRepositoryEvent(event);
+            } catch (Exception e) {
+                LOG.warn("Failed to notify " + listener + " of " + event + ". " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the checked out branch of the clone was recently updated after a push webhook
+     */
+    public boolean isSynced(File gitFolder) {
+        Long time = syncTimes.get(gitFolder);
+        return time != null && System.currentTimeMillis() - time < syncMillis;
+    }
+
+    /**
+     * Returns the <code>owner/name</code> of a git URL so that HTTP and SSH URLs or internal and external host names
+     * of the same repository match
+     */
+    public static String getRepositoryKey(String url) {
+        if (Strings.isNullOrBlank(url)) {
+            return null;
+        }
+        String path = url.trim();
+        try {
+            if (path.contains("://")) {
+                path = new URI(path).getPath();
+            } else if (path.contains(":")) {
+                // scp like syntax: git@host:owner/name.git
+                path = path.substring(path.indexOf(':') + 1);
+            }
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (path == null) {
+            return null;
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - 4);
+        }
+        String[] segments = path.split("/");
+        if (segments.length < 2) {
+            return null;
+        }
+        return (segments[segments.length - 2] + "/" + segments[segments.length - 1]).toLowerCase();
+    }
+}
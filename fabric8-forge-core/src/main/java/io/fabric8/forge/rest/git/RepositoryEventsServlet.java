@@ -0,0 +1,315 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.forge.rest.main.GitUserHelper;
+import io.fabric8.forge.rest.main.UserDetails;
+import io.fabric8.repo.git.RepositoryDTO;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Inject;
+import javax.naming.InitialContext;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the {@link RepositoryEvent}s of a repository as server sent events so that the console can refresh its
+ * views when a commit is made rather than polling the history and content of the repository.
+ * <p/>
+ * Clients connect to <code>/api/forge/events/{owner}/{repo}</code> with an optional <code>branch</code> query
+ * parameter and receive <code>pushed</code>, <code>updated</code> and <code>committed</code> events whose data is a
+ * JSON object with the repository, branch, commit id and timestamp.
+ * <p/>
+ * Clients must pass their gogs credentials, via the <code>GogsAuthorization</code> header or the
+ * <code>_gogsAuth</code> query parameter as browsers cannot set headers on an <code>EventSource</code>, and can
+ * only subscribe to repositories which gogs lists for them.
+ * <p/>
+ * Each client has a bounded queue of events which is written by a small pool of threads; so a slow client only
+ * holds up its own events and is disconnected if its queue fills up.
+ */
+public class RepositoryEventsServlet extends HttpServlet {
+    private static final transient Logger LOG = LoggerFactory.getLogger(RepositoryEventsServlet.class);
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    protected static int writerThreads = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_EVENTS_WRITER_THREADS", "4"));
+    protected static int maxQueuedEvents = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_EVENTS_MAX_QUEUED", "100"));
+
+    @Inject
+    private RepositoryEvents repositoryEvents;
+
+    @Inject
+    private GitUserHelper gitUserHelper;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService writerService = Executors.newFixedThreadPool(Math.max(1, writerThreads), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "forge-events-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        if (repositoryEvents == null) {
+            repositoryEvents = lookupBean(RepositoryEvents.class);
+        }
+        if (gitUserHelper == null) {
+            gitUserHelper = lookupBean(GitUserHelper.class);
+        }
+        executorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (Subscriber subscriber : subscribers) {
+                    // lets detect clients which have gone away
+                    subscriber.send(": ping\n\n");
+                }
+            }
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+        writerService.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String repository = RepositoryEvents.getRepositoryKey(request.getPathInfo());
+        if (Strings.isNullOrBlank(repository)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a path of the form {owner}/{repo}");
+            return;
+        }
+        if (!GitUserHelper.hasUserCredentials(request)) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "You must authenticate to receive the events of a repository");
+            return;
+        }
+        UserDetails userDetails = gitUserHelper.createUserDetails(request);
+        if (!canAccessRepository(userDetails, repository)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "User " + userDetails.getUser() + " cannot access repository " + repository);
+            return;
+        }
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(": connected\n\n");
+        response.flushBuffer();
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        final Subscriber subscriber = new Subscriber(asyncContext, repository, request.getParameter("branch"));
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        subscribers.add(subscriber);
+        repositoryEvents.addListener(subscriber);
+    }
+
+    /**
+     * Returns true if gogs lists the repository for the user
+     */
+    protected boolean canAccessRepository(UserDetails userDetails, String repository) {
+        try {
+            List<RepositoryDTO> repositories = userDetails.createRepoClient().listRepositories();
+            if (repositories != null) {
+                for (RepositoryDTO dto : repositories) {
+                    if (Objects.equals(repository, RepositoryEvents.getRepositoryKey(dto.getFullName()))) {
+                        return true;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to list the repositories of user " + userDetails.getUser() + ". " + e, e);
+        }
+        return false;
+    }
+
+    protected String toJson(RepositoryEvent event) throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("repository", event.getRepository());
+        data.put("branch", event.getBranch());
+        data.put("commitId", event.getCommitId());
+        data.put("timestamp", event.getTimestamp());
+        return objectMapper.writeValueAsString(data);
+    }
+
+    public static <T> T lookupBean(Class<T> type) throws ServletException {
+        try {
+            BeanManager beanManager = (BeanManager) new InitialContext().lookup("java:comp/env/BeanManager");
+            Bean<?> bean = beanManager.resolve(beanManager.getBeans(type));
+            return type.cast(beanManager.getReference(bean, type, beanManager.createCreationalContext(bean)));
+        } catch (Exception e) {
+            throw new ServletException("Failed to find the " + type.getSimpleName() + " bean: " + e, e);
+        }
+    }
+
+    /**
+     * A connected client; events are queued and written by the writer threads so that git operations never block
+     * on slow clients. Only one writer thread drains the queue of a client at a time.
+     */
+    protected class Subscriber implements RepositoryListener {
+        private final AsyncContext asyncContext;
+        private final String repository;
+        private final String branch;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(Math.max(1, maxQueuedEvents));
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        public Subscriber(AsyncContext asyncContext, String repository, String branch) {
+            this.asyncContext = asyncContext;
+            this.repository = repository;
+            this.branch = branch;
+        }
+
+        @Override
+        public void onRepositoryEvent(RepositoryEvent event) {
+            if (!Objects.equals(repository, event.getRepository())) {
+                return;
+            }
+            if (Strings.isNotBlank(branch) && !Objects.equals(branch, event.getBranch())) {
+                return;
+            }
+            try {
+                send("event: " + event.getType().name().toLowerCase() + "\ndata: " + toJson(event) + "\n\n");
+            } catch (IOException e) {
+                LOG.warn("Failed to convert " + event + " to JSON. " + e, e);
+            }
+        }
+
+        public void send(String text) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(text)) {
+                LOG.info("Disconnecting the events client of " + repository + " as it has " + queue.size() + " events waiting to be written");
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        protected void scheduleDrain() {
+            if (closed || queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                writerService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            drain();
+                        } finally {
+                            draining.set(false);
+                        }
+                        // lets pick up any events queued after the last poll
+                        scheduleDrain();
+                    }
+                });
+            } catch (Exception e) {
+                // shutting down
+                draining.set(false);
+                close();
+            }
+        }
+
+        protected void drain() {
+            try {
+                PrintWriter writer = asyncContext.getResponse().getWriter();
+                String text;
+                while (!closed && (text = queue.poll()) != null) {
+                    writer.write(text);
+                    writer.flush();
+                    if (writer.checkError()) {
+                        close();
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                close();
+            }
+        }
+
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            subscribers.remove(this);
+            repositoryEvents.removeListener(this);
+            try {
+                asyncContext.complete();
+            } catch (Exception e) {
+                // already completed
+            }
+        }
+    }
+}
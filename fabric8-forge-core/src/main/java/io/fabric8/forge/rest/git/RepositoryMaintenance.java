@@ -0,0 +1,280 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.forge.rest.main.ProjectFileSystem;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically compacts the cached clones under the <code>PROJECT_FOLDER</code>.
+ * <p/>
+ * Every commit and stash that forge performs leaves loose objects behind; so once a repository has too many loose
+ * objects or pack files and has not been used for a while we drop the stashes forge created itself and run a
+ * <code>git gc</code> while holding the repository lock.
+ */
+@Singleton
+public class RepositoryMaintenance {
+    private static final transient Logger LOG = LoggerFactory.getLogger(RepositoryMaintenance.class);
+    public static final String FORGE_STASH_MESSAGE = "Stash before a write";
+    private static final int MAX_FOLDER_DEPTH = 8;
+    private static final int LATENCY_SAMPLE_COMMITS = 200;
+
+    private final ProjectFileSystem projectFileSystem;
+    private final GitLockManager lockManager;
+    private final int intervalMinutes;
+    private final long idleMillis;
+    private final int maxLooseObjects;
+    private final int maxPackFiles;
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private boolean started;
+
+    @Inject
+    public RepositoryMaintenance(ProjectFileSystem projectFileSystem, GitLockManager lockManager,
+                                 @ConfigProperty(name = "FORGE_GC_INTERVAL_MINUTES", defaultValue = "60") int intervalMinutes,
+                                 @ConfigProperty(name = "FORGE_GC_IDLE_MINUTES", defaultValue = "10") int idleMinutes,
+                                 @ConfigProperty(name = "FORGE_GC_MAX_LOOSE_OBJECTS", defaultValue = "1000") int maxLooseObjects,
+                                 @ConfigProperty(name = "FORGE_GC_MAX_PACK_FILES", defaultValue = "20") int maxPackFiles) {
+        this.projectFileSystem = projectFileSystem;
+        this.lockManager = lockManager;
+        this.intervalMinutes = intervalMinutes;
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        this.maxLooseObjects = maxLooseObjects;
+        this.maxPackFiles = maxPackFiles;
+    }
+
+    /**
+     * Starts the background maintenance; a non positive interval disables it
+     */
+    public synchronized void start() {
+        if (started || intervalMinutes <= 0) {
+            return;
+        }
+        started = true;
+        LOG.info("Checking cached git repositories for maintenance every " + intervalMinutes + " minutes");
+        executorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                maintainRepositories();
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdown();
+    }
+
+    public void maintainRepositories() {
+        List<File> gitFolders = findGitFolders();
+        for (File gitFolder : gitFolders) {
+            try {
+                long lastUsed = lockManager.getLastUsed(gitFolder);
+                if (System.currentTimeMillis() - lastUsed < idleMillis) {
+                    continue;
+                }
+                maintainRepository(gitFolder);
+            } catch (Exception e) {
+                LOG.warn("Failed to perform maintenance on " + gitFolder + ". " + e, e);
+            }
+        }
+    }
+
+    protected void maintainRepository(final File gitFolder) throws Exception {
+        Repository repository = openRepository(gitFolder);
+        try {
+            Properties statistics = Git.wrap(repository).gc().getStatistics();
+            long looseObjects = getLong(statistics, "numberOfLooseObjects");
+            long packFiles = getLong(statistics, "numberOfPackFiles");
+            if (looseObjects <= maxLooseObjects && packFiles <= maxPackFiles) {
+                return;
+            }
+        } finally {
+            repository.close();
+        }
+        lockManager.withLock(gitFolder, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Repository repository = openRepository(gitFolder);
+                try {
+                    collectGarbage(gitFolder, repository);
+                } finally {
+                    repository.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    protected void collectGarbage(File gitFolder, Repository repository) throws Exception {
+        Git git = Git.wrap(repository);
+        Properties before = git.gc().getStatistics();
+        long latencyBefore = measureLookupLatency(repository);
+
+        int droppedStashes = dropForgeStashes(git);
+        boolean sharesObjects = new File(gitFolder, "objects/info/alternates").exists();
+        if (sharesObjects) {
+            // the objects live in the main clone so repacking here would only duplicate them
+            LOG.info("Dropped " + droppedStashes + " stashes in " + gitFolder + " without repacking as it uses alternates");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Properties after = git.gc().setExpire(getPruneExpire(gitFolder)).call();
+        long duration = System.currentTimeMillis() - start;
+        long latencyAfter = measureLookupLatency(repository);
+
+        long reclaimed = getRepositorySize(before) - getRepositorySize(after);
+        LOG.info("Repacked " + gitFolder + " in " + duration + " millis dropping " + droppedStashes + " stashes;"
+                + " loose objects: " + getLong(before, "numberOfLooseObjects") + " -> " + getLong(after, "numberOfLooseObjects")
+                + ", pack files: " + getLong(before, "numberOfPackFiles") + " -> " + getLong(after, "numberOfPackFiles")
+                + ", reclaimed bytes: " + reclaimed
+                + ", lookup latency micros: " + latencyBefore + " -> " + latencyAfter);
+    }
+
+    /**
+     * Drops the stash entries created by forge before each git operation
+     */
+    protected int dropForgeStashes(Git git) throws Exception {
+        Collection<RevCommit> stashes = git.stashList().call();
+        List<Integer> indexes = new ArrayList<>();
+        int index = 0;
+        for (RevCommit stash : stashes) {
+            String message = stash.getFullMessage();
+            if (message != null && message.contains(FORGE_STASH_MESSAGE)) {
+                indexes.add(index);
+            }
+            index++;
+        }
+        // lets drop the oldest first so that the indexes of the remaining stashes don't change
+        for (int i = indexes.size() - 1; i >= 0; i--) {
+            git.stashDrop().setStashRef(indexes.get(i)).call();
+        }
+        return indexes.size();
+    }
+
+    /**
+     * Returns the time in micro seconds it takes to look up the most recent commits and their trees
+     */
+    protected long measureLookupLatency(Repository repository) throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            walk.markStart(walk.parseCommit(head));
+            int count = 0;
+            for (RevCommit commit : walk) {
+                reader.open(commit.getTree()).getSize();
+                if (++count >= LATENCY_SAMPLE_COMMITS) {
+                    break;
+                }
+            }
+        } finally {
+            walk.close();
+            reader.close();
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+
+    /**
+     * Branch work trees borrow objects from the main clone so we must not prune any unreachable objects there
+     */
+    protected Date getPruneExpire(File gitFolder) {
+        File projectFolder = gitFolder.getParentFile();
+        File branchesFolder = new File(projectFolder.getParentFile(), "." + projectFolder.getName() + ".branches");
+        if (branchesFolder.isDirectory()) {
+            return new Date(0);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the <code>.git</code> folders of all the cached clones and branch work trees
+     */
+    public List<File> findGitFolders() {
+        List<File> gitFolders = new ArrayList<>();
+        findGitFolders(projectFileSystem.getRootProjectFolder(), gitFolders, 0);
+        return gitFolders;
+    }
+
+    protected void findGitFolders(File folder, List<File> gitFolders, int depth) {
+        File gitFolder = new File(folder, ".git");
+        if (gitFolder.isDirectory()) {
+            gitFolders.add(gitFolder);
+            return;
+        }
+        if (depth >= MAX_FOLDER_DEPTH) {
+            return;
+        }
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory() && !(depth == 0 && child.getName().equals("secrets"))) {
+                    findGitFolders(child, gitFolders, depth + 1);
+                }
+            }
+        }
+    }
+
+    protected static long getRepositorySize(Properties statistics) {
+        return getLong(statistics, "sizeOfLooseObjects") + getLong(statistics, "sizeOfPackedObjects");
+    }
+
+    protected static long getLong(Properties properties, String name) {
+        Object value = properties.get(name);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value != null) {
+            try {
+                return Long.parseLong(value.toString());
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+        return 0;
+    }
+
+    protected static Repository openRepository(File gitFolder) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(gitFolder).readEnvironment().build();
+    }
+}
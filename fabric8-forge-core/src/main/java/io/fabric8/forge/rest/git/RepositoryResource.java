@@ -20,6 +20,7 @@ import io.fabric8.forge.rest.git.dto.CommitInfo;
 import io.fabric8.forge.rest.git.dto.CommitTreeInfo;
 import io.fabric8.forge.rest.git.dto.DiffInfo;
 import io.fabric8.forge.rest.git.dto.FileDTO;
+import io.fabric8.forge.rest.git.dto.RangeEditDTO;
 import io.fabric8.forge.rest.git.dto.StatusDTO;
 import io.fabric8.forge.rest.main.GitHelpers;
 import io.fabric8.forge.rest.main.MD5Util;
@@ -34,30 +35,42 @@ import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CommitCommand;
 import org.eclipse.jgit.api.CreateBranchCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.PullCommand;
 import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteRefUpdate;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.gitective.core.BlobUtils;
 import org.gitective.core.CommitFinder;
@@ -71,19 +84,24 @@ import org.slf4j.LoggerFactory;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -101,8 +119,13 @@ import static io.fabric8.forge.rest.main.GitHelpers.doAddCommitAndPushFiles;
  */
 public class RepositoryResource {
     private static final transient Logger LOG = LoggerFactory.getLogger(RepositoryResource.class);
+    public static final String STATUS_UNCHANGED = "unchanged";
+    private static final int MIN_BASE_LENGTH = 7;
 
     protected static String gravatarUrl = Systems.getEnvVarOrSystemProperty("GRAVATAR_URL", "http://www.gravatar.com/avatar");
+    protected static int diffRenameLimit = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_DIFF_RENAME_LIMIT", "400"));
+    protected static long diffMaxFileSize = Long.parseLong(Systems.getEnvVarOrSystemProperty("FORGE_DIFF_MAX_FILE_SIZE", "" + 1024 * 1024));
+    protected static long etagFreshSeconds = Long.parseLong(Systems.getEnvVarOrSystemProperty("FORGE_ETAG_FRESH_SECONDS", "5"));
 
     private final File gitFolder;
     private final File basedir;
@@ -116,6 +139,10 @@ public class RepositoryResource {
     private PersonIdent personIdent;
     private String message;
     private String objectId;
+    private BranchWorkTrees workTrees;
+    private File sharedProjectFolder;
+    private GitOperationExecutor executor;
+    private RepositoryEvents repositoryEvents;
 
     public RepositoryResource(File basedir, File gitFolder, UserDetails userDetails, String origin, String branch, String remoteRepository, GitLockManager lockManager, ProjectFileSystem projectFileSystem, String cloneUrl, String objectId) throws IOException, GitAPIException {
         this.basedir = basedir;
@@ -157,10 +184,27 @@ public class RepositoryResource {
         return objectId;
     }
 
+    /**
+     * Configures this resource to use a work tree for its branch which shares its objects with the main clone
+     * of the project in the given folder
+     */
+    public void setWorkTree(BranchWorkTrees workTrees, File sharedProjectFolder) {
+        this.workTrees = workTrees;
+        this.sharedProjectFolder = sharedProjectFolder;
+    }
+
+    public void setExecutor(GitOperationExecutor executor) {
+        this.executor = executor;
+    }
+
+    public void setRepositoryEvents(RepositoryEvents repositoryEvents) {
+        this.repositoryEvents = repositoryEvents;
+    }
+
     @GET
     @Path("content/{path:.*}")
-    public Response fileDetails(final @PathParam("path") String path) throws Exception {
-        return gitReadOperation(new GitOperation<Response>() {
+    public void fileDetails(final @PathParam("path") String path, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Suspended AsyncResponse asyncResponse) {
+        conditionalGitReadOperation(asyncResponse, ifNoneMatch, false, new GitOperation<Response>() {
             @Override
             public Response call(Git git, GitContext context) throws Exception {
                 return doFileDetails(git, path);
@@ -203,8 +247,8 @@ public class RepositoryResource {
 
     @GET
     @Path("raw/{path:.*}")
-    public Response rawFile(final @PathParam("path") String path) throws Exception {
-        return gitReadOperation(new GitOperation<Response>() {
+    public void rawFile(final @PathParam("path") String path, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<Response>() {
             @Override
             public Response call(Git git, GitContext context) throws Exception {
                 return doRawFile(path);
@@ -230,34 +274,221 @@ public class RepositoryResource {
     @POST
     @Path("content/{path:.*}")
     @Consumes("*/*")
-    public Response postFile(@PathParam("path") String path, @QueryParam("message") String message, final InputStream body) throws Exception {
-        return uploadFile(path, message, body);
+    public void postFile(@PathParam("path") String path, @QueryParam("message") String message, final InputStream body, @Suspended AsyncResponse asyncResponse) throws IOException {
+        // lets read the body on the request thread as the stream is not usable once the request is suspended
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOHelpers.copy(body, buffer);
+        uploadFile(path, message, buffer.toByteArray(), asyncResponse);
     }
 
     @POST
     @Path("content/{path:.*}")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public Response postFileForm(@PathParam("path") String path, @FormParam("message") String message, @FormParam("file") String body) throws Exception {
+    public void postFileForm(@PathParam("path") String path, @FormParam("message") String message, @FormParam("file") String body, @Suspended AsyncResponse asyncResponse) {
         byte[] bytes = body.getBytes();
-        return uploadFile(path, message, new ByteArrayInputStream(bytes));
+        uploadFile(path, message, bytes, asyncResponse);
+    }
+
+    /**
+     * Applies a unified diff to the file in the working copy and commits it. The <code>base</code> query parameter must
+     * be the blob id of the file the diff was made against; if the file has changed since then a 409 CONFLICT is
+     * returned so the client can reload and retry.
+     */
+    @POST
+    @Path("patch/{path:.*}")
+    @Consumes({"text/x-diff", "text/x-patch", MediaType.TEXT_PLAIN})
+    public void patchFile(@PathParam("path") String path, @QueryParam("base") String base, @QueryParam("message") String message, String patch, @Suspended AsyncResponse asyncResponse) {
+        patchFile(path, base, message, PatchApplier.unifiedDiff(patch), asyncResponse);
+    }
+
+    /**
+     * Applies a list of line range edits to the file in the working copy and commits it; see
+     * {@link #patchFile(String, String, String, String, AsyncResponse)}
+     */
+    @POST
+    @Path("patch/{path:.*}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void editFile(@PathParam("path") String path, @QueryParam("base") String base, @QueryParam("message") String message, List<RangeEditDTO> edits, @Suspended AsyncResponse asyncResponse) {
+        patchFile(path, base, message, PatchApplier.rangeEdits(edits), asyncResponse);
+    }
+
+    protected void patchFile(final String path, final String base, final String message, final PatchApplier patch, AsyncResponse asyncResponse) {
+        if (Strings.isNullOrBlank(base) || base.length() < MIN_BASE_LENGTH) {
+            asyncResponse.resume(Response.status(Response.Status.BAD_REQUEST).entity(new StatusDTO(path, "the base query parameter must be the blob id the patch was made against")).build());
+            return;
+        }
+        gitWriteOperation(asyncResponse, new GitOperation<Response>() {
+            @Override
+            public Response call(Git git, GitContext context) throws Exception {
+                return doPatchFile(path, base, message, patch);
+            }
+        });
+    }
+
+    protected Response doPatchFile(String path, String base, String message, PatchApplier patch) throws Exception {
+        File file = getRelativeFile(path);
+        if (!file.isFile()) {
+            return Response.status(Response.Status.NOT_FOUND).entity(new StatusDTO(path, "not found")).build();
+        }
+        byte[] contents = Files.readBytes(file);
+        ObjectId currentId = idFor(contents);
+        if (!currentId.getName().startsWith(base.toLowerCase())) {
+            return Response.status(Response.Status.CONFLICT).entity(new StatusDTO(path, "conflict", currentId.getName())).build();
+        }
+        byte[] patched;
+        try {
+            patched = patch.apply(contents);
+        } catch (PatchApplier.PatchException e) {
+            LOG.info("Could not patch " + path + ": " + e.getMessage());
+            return Response.status(Response.Status.CONFLICT).entity(new StatusDTO(path, e.getMessage(), currentId.getName())).build();
+        }
+        this.message = Strings.isNotBlank(message) ? message : "Patched " + path;
+        Files.writeToFile(file, patched);
+        return Response.ok(new StatusDTO(path, "updated", idFor(patched).getName())).build();
+    }
+
+    protected static ObjectId idFor(byte[] contents) {
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            return formatter.idFor(Constants.OBJ_BLOB, contents);
+        }
+    }
+
+    /**
+     * Commits the file directly into the object database of the repository without staging it in the shared working
+     * copy; the lock of the repository is only held to move the branch and refresh the file in the working copy.
+     * <p/>
+     * The remote branch is fetched first so the commit is made on top of the latest changes. If the
+     * <code>parent</code> query parameter is specified then the commit is only made if the branch still points at
+     * that commit; otherwise, or if the push of the commit is rejected, a 409 CONFLICT is returned so the client can
+     * reload and retry.
+     */
+    @POST
+    @Path("commit/{path:.*}")
+    @Consumes("*/*")
+    public void commitFile(@PathParam("path") final String path, @QueryParam("message") final String message, @QueryParam("parent") final String parent, final InputStream body, @Suspended AsyncResponse asyncResponse) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOHelpers.copy(body, buffer);
+        final byte[] contents = buffer.toByteArray();
+        execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return doCommitFile(path, message, parent, contents);
+            }
+        });
+    }
+
+    protected Response doCommitFile(String path, String commitMessage, String parent, final byte[] contents) throws Exception {
+        lockManager.withLock(gitFolder, new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return cloneRepoIfNotExist();
+            }
+        });
+        final String message = Strings.isNotBlank(commitMessage) ? commitMessage : "Updated " + path;
+        final String filePath = trimLeadingSlash(path);
+        createPersonIdent();
+        Repository repository = openRepository();
+        try {
+            Git git = new Git(repository);
+            if (isPushOnCommit()) {
+                doFetch(git);
+            }
+            final ObjectId startPoint = repository.resolve(Constants.R_REMOTES + getRemote() + "/" + branch);
+            final ObjectId expectedParent;
+            if (Strings.isNotBlank(parent)) {
+                expectedParent = repository.resolve(parent);
+                if (expectedParent == null) {
+                    return Response.status(Response.Status.CONFLICT).entity(new StatusDTO(path, "unknown parent " + parent)).build();
+                }
+            } else {
+                expectedParent = null;
+            }
+            final ObjectDatabaseCommitter committer = new ObjectDatabaseCommitter(repository);
+            RevCommit revCommit;
+            try {
+                revCommit = lockManager.withLock(gitFolder, new Callable<RevCommit>() {
+                    @Override
+                    public RevCommit call() throws Exception {
+                        committer.fastForward(branch, startPoint);
+                        RevCommit answer = committer.commitFile(branch, startPoint, filePath, contents, personIdent, message, expectedParent);
+                        if (committer.isCheckedOut(branch)) {
+                            committer.refreshWorkTree(Arrays.asList(filePath));
+                        }
+                        return answer;
+                    }
+                });
+            } catch (ConcurrentRefUpdateException e) {
+                LOG.info("Rejected commit of " + path + " on branch " + branch + ": " + e.getMessage());
+                return Response.status(Response.Status.CONFLICT).entity(new StatusDTO(path, "conflict")).build();
+            }
+            if (isPushOnCommit()) {
+                String rejection;
+                try {
+                    rejection = getPushRejection(doPushBranch(git));
+                } catch (GitAPIException e) {
+                    undoCommit(committer, revCommit, filePath);
+                    throw e;
+                }
+                if (rejection != null) {
+                    LOG.info("Rejected push of " + revCommit.getName() + " for " + path + " on branch " + branch + ": " + rejection);
+                    undoCommit(committer, revCommit, filePath);
+                    return Response.status(Response.Status.CONFLICT).entity(new StatusDTO(path, "rejected", rejection)).build();
+                }
+            }
+            fireCommitted(revCommit);
+            return Response.ok(createCommitInfo(revCommit)).build();
+        } finally {
+            repository.close();
+        }
+    }
+
+    /**
+     * Moves the branch back before a commit which could not be pushed so the next commit starts from the remote branch
+     */
+    protected void undoCommit(final ObjectDatabaseCommitter committer, final RevCommit revCommit, final String path) throws Exception {
+        lockManager.withLock(gitFolder, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (committer.undoCommit(branch, revCommit) && committer.isCheckedOut(branch)) {
+                    committer.refreshWorkTree(Arrays.asList(path));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the status of the first rejected ref update of the push or null if the push succeeded
+     */
+    protected static String getPushRejection(Iterable<PushResult> results) {
+        for (PushResult result : results) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                RemoteRefUpdate.Status status = update.getStatus();
+                if (status != RemoteRefUpdate.Status.OK && status != RemoteRefUpdate.Status.UP_TO_DATE) {
+                    String message = update.getMessage();
+                    return Strings.isNotBlank(message) ? status + " " + message : status.toString();
+                }
+            }
+        }
+        return null;
     }
 
     @GET
     @Path("diff/{objectId1}")
-    public String diff(@PathParam("objectId1") String objectId) throws Exception {
-        return diff(objectId, null, null);
+    public void diff(@PathParam("objectId1") String objectId, @Suspended AsyncResponse asyncResponse) {
+        diff(objectId, null, null, asyncResponse);
     }
 
     @GET
     @Path("diff/{objectId1}/{objectId2}")
-    public String diff(@PathParam("objectId1") String objectId, @PathParam("objectId2") String baseObjectId) throws Exception {
-        return diff(objectId, baseObjectId, null);
+    public void diff(@PathParam("objectId1") String objectId, @PathParam("objectId2") String baseObjectId, @Suspended AsyncResponse asyncResponse) {
+        diff(objectId, baseObjectId, null, asyncResponse);
     }
 
     @GET
     @Path("diff/{objectId1}/{objectId2}/{path:.*}")
-    public String diff(final @PathParam("objectId1") String objectId, final @PathParam("objectId2") String baseObjectId, final @PathParam("path") String pathOrBlobPath) throws Exception {
-        return gitReadOperation(new GitOperation<String>() {
+    public void diff(final @PathParam("objectId1") String objectId, final @PathParam("objectId2") String baseObjectId, final @PathParam("path") String pathOrBlobPath, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<String>() {
             @Override
             public String call(Git git, GitContext context) throws Exception {
                 return doDiff(git, objectId, baseObjectId, pathOrBlobPath);
@@ -318,14 +549,17 @@ public class RepositoryResource {
         DiffFormatter formatter = new DiffFormatter(buffer);
         formatter.setRepository(r);
         formatter.setDiffComparator(RawTextComparator.DEFAULT);
-        formatter.setDetectRenames(true);
+        formatter.setDetectRenames(diffRenameLimit > 0);
+        if (diffRenameLimit > 0) {
+            formatter.getRenameDetector().setRenameLimit(diffRenameLimit);
+        }
         return formatter;
     }
 
     @GET
     @Path("commitInfo/{commitId}")
-    public CommitInfo commitInfo(final @PathParam("commitId") String commitId) throws Exception {
-        return gitReadOperation(new GitOperation<CommitInfo>() {
+    public void commitInfo(final @PathParam("commitId") String commitId, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doCommitInfo(git, commitId);
@@ -333,18 +567,40 @@ public class RepositoryResource {
         });
     }
 
+    /**
+     * Returns the commit with the diffs of all the changed files; or with just the changed files and their line counts
+     * if <code>summary</code> is true so that the diffs of large commits can be fetched a file at a time
+     */
     @GET
     @Path("commitDetail/{commitId}")
-    public CommitDetail commitDetail(final @PathParam("commitId") String commitId) throws Exception {
-        return gitReadOperation(new GitOperation<CommitDetail>() {
+    public void commitDetail(final @PathParam("commitId") String commitId, final @QueryParam("summary") boolean summary, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<CommitDetail>() {
             @Override
             public CommitDetail call(Git git, GitContext context) throws Exception {
-                return doCommitDetail(git, commitId);
+                return doCommitDetail(git, commitId, summary);
+            }
+        });
+    }
+
+    /**
+     * Returns the diff of a single file changed in a commit
+     */
+    @GET
+    @Path("commitDetail/{commitId}/{path:.*}")
+    public void commitFileDetail(final @PathParam("commitId") String commitId, final @PathParam("path") String path, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<DiffInfo>() {
+            @Override
+            public DiffInfo call(Git git, GitContext context) throws Exception {
+                return doCommitFileDetail(git, commitId, path);
             }
         });
     }
 
     protected CommitDetail doCommitDetail(Git git, String commitId) throws IOException {
+        return doCommitDetail(git, commitId, false);
+    }
+
+    protected CommitDetail doCommitDetail(Git git, String commitId, boolean summary) throws IOException {
         RevCommit baseCommit = doGetCommit(git, commitId);
         if (baseCommit == null) {
             return null;
@@ -354,60 +610,150 @@ public class RepositoryResource {
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
             Repository r = git.getRepository();
             DiffFormatter formatter = createDiffFormatter(r, buffer);
+            ObjectReader reader = r.newObjectReader();
+            try {
+                List<DiffEntry> diffEntries = scanCommit(r, formatter, baseCommit, commitId);
+                for (DiffEntry diffEntry : diffEntries) {
+                    diffs.add(summary ? createDiffSummary(formatter, reader, diffEntry) : formatDiff(formatter, reader, buffer, diffEntry));
+                }
+            } finally {
+                reader.close();
+                formatter.close();
+            }
+            CommitInfo commitInfo = createCommitInfo(baseCommit);
+            return new CommitDetail(commitInfo, diffs);
+        }
+    }
+
+    /**
+     * Returns the diff of the file in the commit; only the file is compared so that fetching the files of a large
+     * commit one at a time does not scan the whole commit each time, which means a renamed file is shown as added
+     */
+    protected DiffInfo doCommitFileDetail(Git git, String commitId, String pathOrBlobPath) throws IOException {
+        RevCommit commit = doGetCommit(git, commitId);
+        String blobPath = trimLeadingSlash(pathOrBlobPath);
+        if (commit == null || Strings.isNullOrBlank(blobPath)) {
+            return null;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Repository r = git.getRepository();
+        DiffFormatter formatter = createDiffFormatter(r, buffer);
+        formatter.setDetectRenames(false);
+        formatter.setPathFilter(PathFilter.create(blobPath));
+        ObjectReader reader = r.newObjectReader();
+        try {
+            for (DiffEntry diffEntry : scanCommit(r, formatter, commit, commitId)) {
+                if (Objects.equals(blobPath, diffEntry.getNewPath()) || Objects.equals(blobPath, diffEntry.getOldPath())) {
+                    return formatDiff(formatter, reader, buffer, diffEntry);
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+            formatter.close();
+        }
+    }
+
+    /**
+     * Returns the changes of the commit compared to its first parent
+     */
+    protected List<DiffEntry> scanCommit(Repository r, DiffFormatter formatter, RevCommit baseCommit, String commitId) throws IOException {
+        //git.diff().setNewTree()
+        RevTree commitTree = baseCommit.getTree();
+        RevTree baseTree = null;
+        ObjectId parentId = null;
+        if (baseCommit.getParentCount() > 0) {
+            final RevWalk rw = new RevWalk(r);
+            parentId = baseCommit.getParent(0).getId();
+            RevCommit parent = rw.parseCommit(parentId);
+            baseTree = parent.getTree();
+            rw.dispose();
 
-            //git.diff().setNewTree()
-            RevTree commitTree = baseCommit.getTree();
-            RevTree baseTree = null;
-            ObjectId parentId = null;
-            if (baseCommit.getParentCount() > 0) {
+        } else {
+            // FIXME initial commit. no parent?!
+            baseTree = commitTree;
+        }
+        if (baseTree == null) {
+            baseTree = baseCommit.getTree();
+        }
+
+        List<DiffEntry> diffEntries = formatter.scan(baseTree, commitTree);
+        if (diffEntries.isEmpty()) {
+            // lets try get the previous commit
+            String previousCommit = commitId + "~1";
+            ObjectId resolve = r.resolve(previousCommit);
+            RevTree newTree = null;
+            if (resolve != null) {
                 final RevWalk rw = new RevWalk(r);
-                parentId = baseCommit.getParent(0).getId();
-                RevCommit parent = rw.parseCommit(parentId);
-                baseTree = parent.getTree();
+                RevCommit parent = rw.parseCommit(resolve);
+                newTree = parent.getTree();
                 rw.dispose();
-
-            } else {
-                // FIXME initial commit. no parent?!
-                baseTree = commitTree;
-            }
-            if (baseTree == null) {
-                baseTree = baseCommit.getTree();
-            }
-
-            List<DiffEntry> diffEntries = formatter.scan(baseTree, commitTree);
-            if (diffEntries.isEmpty()) {
-                // lets try get the previous commit
-                String previousCommit = commitId + "~1";
-                ObjectId resolve = r.resolve(previousCommit);
-                RevTree newTree = null;
-                if (resolve != null) {
-                    final RevWalk rw = new RevWalk(r);
-                    RevCommit parent = rw.parseCommit(resolve);
-                    newTree = parent.getTree();
-                    rw.dispose();
-                }
-                if (baseTree == null || newTree == null || !Objects.equals(baseTree.getId(), newTree.getId())) {
-                    diffEntries = formatter.scan(newTree, commitTree);
-                }
             }
-            for (DiffEntry diffEntry : diffEntries) {
-                formatter.format(diffEntry);
-                formatter.flush();
-                String diff = buffer.toString();
-                buffer.reset();
-                DiffInfo diffInfo = createDiffInfo(diffEntry, diff);
-                diffs.add(diffInfo);
+            if (baseTree == null || newTree == null || !Objects.equals(baseTree.getId(), newTree.getId())) {
+                diffEntries = formatter.scan(newTree, commitTree);
             }
-            CommitInfo commitInfo = createCommitInfo(baseCommit);
-            return new CommitDetail(commitInfo, diffs);
         }
+        return diffEntries;
+    }
 
+    protected DiffInfo formatDiff(DiffFormatter formatter, ObjectReader reader, ByteArrayOutputStream buffer, DiffEntry diffEntry) throws IOException {
+        if (isTooLargeToDiff(reader, diffEntry)) {
+            return createDiffInfo(diffEntry, null, null, null, null, true);
+        }
+        formatter.format(diffEntry);
+        formatter.flush();
+        String diff = buffer.toString();
+        buffer.reset();
+        return createDiffInfo(diffEntry, diff);
+    }
+
+    /**
+     * Creates the summary of a change with the number of lines added and deleted but without the diff text
+     */
+    protected DiffInfo createDiffSummary(DiffFormatter formatter, ObjectReader reader, DiffEntry diffEntry) throws IOException {
+        if (isTooLargeToDiff(reader, diffEntry)) {
+            return createDiffInfo(diffEntry, null, null, null, null, true);
+        }
+        FileHeader fileHeader = formatter.toFileHeader(diffEntry);
+        if (fileHeader.getPatchType() != FileHeader.PatchType.UNIFIED) {
+            return createDiffInfo(diffEntry, null, null, null, true, null);
+        }
+        int added = 0;
+        int deleted = 0;
+        for (Edit edit : fileHeader.toEditList()) {
+            added += edit.getLengthB();
+            deleted += edit.getLengthA();
+        }
+        return createDiffInfo(diffEntry, null, added, deleted, null, null);
+    }
+
+    /**
+     * Returns true if either side of the change is a blob larger than the <code>FORGE_DIFF_MAX_FILE_SIZE</code>
+     */
+    protected boolean isTooLargeToDiff(ObjectReader reader, DiffEntry diffEntry) throws IOException {
+        if (diffMaxFileSize <= 0) {
+            return false;
+        }
+        return isBlobLargerThan(reader, diffEntry.getOldId(), diffEntry.getOldMode(), diffMaxFileSize) ||
+                isBlobLargerThan(reader, diffEntry.getNewId(), diffEntry.getNewMode(), diffMaxFileSize);
+    }
+
+    protected static boolean isBlobLargerThan(ObjectReader reader, AbbreviatedObjectId id, FileMode mode, long size) throws IOException {
+        if (id == null || !id.isComplete() || ObjectId.zeroId().equals(id.toObjectId()) || mode == FileMode.GITLINK || mode == FileMode.MISSING) {
+            return false;
+        }
+        return reader.getObjectSize(id.toObjectId(), Constants.OBJ_BLOB) > size;
     }
 
     protected DiffInfo createDiffInfo(DiffEntry diffEntry, String diff) {
         return new DiffInfo(diffEntry.getChangeType(), diffEntry.getNewPath(), toInt(diffEntry.getNewMode()), diffEntry.getOldPath(), toInt(diffEntry.getOldMode()), diff);
     }
 
+    protected DiffInfo createDiffInfo(DiffEntry diffEntry, String diff, Integer linesAdded, Integer linesDeleted, Boolean binary, Boolean tooLarge) {
+        return new DiffInfo(diffEntry.getChangeType(), diffEntry.getNewPath(), toInt(diffEntry.getNewMode()), diffEntry.getOldPath(), toInt(diffEntry.getOldMode()), diff,
+                linesAdded, linesDeleted, binary, tooLarge);
+    }
+
     protected static int toInt(FileMode fileMode) {
         return fileMode != null ? fileMode.getBits() : 0;
     }
@@ -431,8 +777,8 @@ public class RepositoryResource {
      */
     @GET
     @Path("commitTree/{commitId}")
-    public List<CommitTreeInfo> getCommitTree(final @PathParam("commitId") String commitId) throws Exception {
-        return gitReadOperation(new GitOperation<List<CommitTreeInfo>>() {
+    public void getCommitTree(final @PathParam("commitId") String commitId, @Suspended AsyncResponse asyncResponse) {
+        gitReadOperation(asyncResponse, new GitOperation<List<CommitTreeInfo>>() {
             @Override
             public List<CommitTreeInfo> call(Git git, GitContext context) throws Exception {
                 return doGetCommitTree(git, commitId);
@@ -495,14 +841,14 @@ public class RepositoryResource {
 
     @GET
     @Path("history")
-    public List<CommitInfo> history(@QueryParam("limit") int limit) throws Exception {
-        return history(null, null, limit);
+    public void history(@QueryParam("limit") int limit, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Suspended AsyncResponse asyncResponse) {
+        history(null, null, limit, ifNoneMatch, asyncResponse);
     }
 
     @GET
     @Path("history/{commitId}/{path:.*}")
-    public List<CommitInfo> history(@PathParam("commitId") final String objectId, @PathParam("path") final String pathOrBlobPath, @QueryParam("limit") final int limit) throws Exception {
-        return gitReadOperation(new GitOperation<List<CommitInfo>>() {
+    public void history(@PathParam("commitId") final String objectId, @PathParam("path") final String pathOrBlobPath, @QueryParam("limit") final int limit, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Suspended AsyncResponse asyncResponse) {
+        conditionalGitReadOperation(asyncResponse, ifNoneMatch, false, new GitOperation<List<CommitInfo>>() {
             @Override
             public List<CommitInfo> call(Git git, GitContext context) throws Exception {
                 return doHistory(git, objectId, pathOrBlobPath, limit);
@@ -558,8 +904,8 @@ public class RepositoryResource {
 
     @POST
     @Path("mkdir/{path:.*}")
-    public CommitInfo createDirectory(@PathParam("commitId") final String path) throws Exception {
-        return gitWriteOperation(new GitOperation<CommitInfo>() {
+    public void createDirectory(@PathParam("commitId") final String path, @Suspended AsyncResponse asyncResponse) {
+        gitWriteOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doCreateDirectory(git, path);
@@ -584,8 +930,8 @@ public class RepositoryResource {
 
     @POST
     @Path("revert/{commitId}/{path:.*}")
-    public CommitInfo revert(@PathParam("commitId") final String objectId, @PathParam("path") final String blobPath) throws Exception {
-        return gitWriteOperation(new GitOperation<CommitInfo>() {
+    public void revert(@PathParam("commitId") final String objectId, @PathParam("path") final String blobPath, @Suspended AsyncResponse asyncResponse) {
+        gitWriteOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doRevert(git, objectId, blobPath);
@@ -604,8 +950,8 @@ public class RepositoryResource {
 
     @POST
     @Path("mv/{path:.*}")
-    public CommitInfo rename(@QueryParam("old") final String oldPath, @PathParam("path") final String newPath) throws Exception {
-        return gitWriteOperation(new GitOperation<CommitInfo>() {
+    public void rename(@QueryParam("old") final String oldPath, @PathParam("path") final String newPath, @Suspended AsyncResponse asyncResponse) {
+        gitWriteOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doRename(git, oldPath, newPath);
@@ -635,8 +981,8 @@ public class RepositoryResource {
     @POST
     @Path("rm")
     @Consumes({"application/xml", "application/json", "text/json"})
-    public CommitInfo remove(final List<String> paths) throws Exception {
-        return gitWriteOperation(new GitOperation<CommitInfo>() {
+    public void remove(final List<String> paths, @Suspended AsyncResponse asyncResponse) {
+        gitWriteOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doRemove(git, paths);
@@ -666,8 +1012,8 @@ public class RepositoryResource {
 
     @POST
     @Path("rm/{path:.*}")
-    public CommitInfo remove(@PathParam("path") final String path) throws Exception {
-        return gitWriteOperation(new GitOperation<CommitInfo>() {
+    public void remove(@PathParam("path") final String path, @Suspended AsyncResponse asyncResponse) {
+        gitWriteOperation(asyncResponse, new GitOperation<CommitInfo>() {
             @Override
             public CommitInfo call(Git git, GitContext context) throws Exception {
                 return doRemove(git, path);
@@ -677,14 +1023,19 @@ public class RepositoryResource {
 
     @POST
     @Path("removeProject")
-    public Response remove() throws Exception {
-        return lockManager.withLock(gitFolder, new Callable<Response>() {
-
+    public void remove(@Suspended AsyncResponse asyncResponse) {
+        execute(asyncResponse, new Callable<Response>() {
             @Override
             public Response call() throws Exception {
-                LOG.info("Removing clone of project at " + basedir);
-                Files.recursiveDelete(basedir);
-                return Response.ok(new StatusDTO(basedir.getName(), "remove project")).build();
+                return lockManager.withLock(gitFolder, new Callable<Response>() {
+
+                    @Override
+                    public Response call() throws Exception {
+                        LOG.info("Removing clone of project at " + basedir);
+                        Files.recursiveDelete(basedir);
+                        return Response.ok(new StatusDTO(basedir.getName(), "remove project")).build();
+                    }
+                });
             }
         });
     }
@@ -704,8 +1055,8 @@ public class RepositoryResource {
 
     @GET
     @Path("listBranches")
-    public List<String> listBranches() throws Exception {
-        return gitReadOperation(new GitOperation<List<String>>() {
+    public void listBranches(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Suspended AsyncResponse asyncResponse) {
+        conditionalGitReadOperation(asyncResponse, ifNoneMatch, true, new GitOperation<List<String>>() {
             @Override
             public List<String> call(Git git, GitContext context) throws Exception {
                 return doListBranches(git);
@@ -729,6 +1080,189 @@ public class RepositoryResource {
         return new ArrayList<String>(names);
     }
 
+    /**
+     * Performs the read operation with a weak ETag of the state of the repository; if the ETag matches the
+     * <code>If-None-Match</code> header then a 304 is returned without performing the operation.
+     * <p/>
+     * If the clone was recently brought up to date, by a push webhook or by an operation which released the lock within
+     * the last <code>FORGE_ETAG_FRESH_SECONDS</code>, the ETag is first checked against the refs and index on disk; so
+     * unchanged polls return without waiting for the lock or pulling.
+     *
+     * @param allRefs whether the result depends on all the branches or just the checked out one
+     */
+    protected <T> void conditionalGitReadOperation(AsyncResponse asyncResponse, final String ifNoneMatch, final boolean allRefs, final GitOperation<T> operation) {
+        final GitOperation<Response> conditionalOperation = new GitOperation<Response>() {
+            @Override
+            public Response call(Git git, GitContext context) throws Exception {
+                EntityTag tag = createEntityTag(git.getRepository(), allRefs);
+                if (tag != null && matchesEntityTag(ifNoneMatch, tag)) {
+                    return Response.notModified(tag).build();
+                }
+                T result = operation.call(git, context);
+                Response.ResponseBuilder builder;
+                if (result instanceof Response) {
+                    Response response = (Response) result;
+                    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                        return response;
+                    }
+                    builder = Response.fromResponse(response);
+                } else {
+                    builder = Response.ok(result);
+                }
+                if (tag != null) {
+                    builder.tag(tag);
+                }
+                return builder.build();
+            }
+        };
+        if (Strings.isNullOrBlank(ifNoneMatch)) {
+            gitReadOperation(asyncResponse, conditionalOperation);
+            return;
+        }
+        execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                EntityTag tag = createUnlockedEntityTag(allRefs);
+                if (tag != null && matchesEntityTag(ifNoneMatch, tag)) {
+                    return Response.notModified(tag).build();
+                }
+                return gitReadOperation(conditionalOperation);
+            }
+        });
+    }
+
+    /**
+     * Returns the ETag of the refs and index on disk without taking the lock or pulling; or null if the clone may be
+     * behind the remote repository or does not have the branch checked out
+     */
+    protected EntityTag createUnlockedEntityTag(boolean allRefs) {
+        if (!Files.isDirectory(gitFolder)) {
+            return null;
+        }
+        try {
+            if (!isCloneInSync()) {
+                return null;
+            }
+            Repository repository = openRepository();
+            try {
+                if (!allRefs && !Objects.equals(Constants.R_HEADS + branch, repository.getFullBranch())) {
+                    return null;
+                }
+                return createEntityTag(repository, allRefs);
+            } finally {
+                repository.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to create the ETag of " + gitFolder + " without the lock: " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the clone is known to match the remote repository without pulling; as it is kept in sync by the
+     * webhooks or was pulled within the last <code>FORGE_ETAG_FRESH_SECONDS</code>
+     */
+    protected boolean isCloneInSync() {
+        if (repositoryEvents != null && repositoryEvents.isSynced(gitFolder)) {
+            return true;
+        }
+        return System.currentTimeMillis() - lockManager.getLastUsed(gitFolder) <= etagFreshSeconds * 1000;
+    }
+
+    /**
+     * Creates a weak ETag from the commit being viewed, the tip of the branch and the index; which changes whenever a
+     * commit, pull, stash or checkout changes the working copy. Returns null if the repository has no commits yet.
+     */
+    protected EntityTag createEntityTag(Repository repository, boolean allRefs) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        if (allRefs) {
+            SortedSet<String> refs = new TreeSet<>();
+            for (Ref ref : repository.getAllRefs().values()) {
+                ObjectId id = ref.getObjectId();
+                refs.add(ref.getName() + "=" + (id != null ? id.getName() : ""));
+            }
+            for (String ref : refs) {
+                builder.append(ref).append("\n");
+            }
+        } else {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return null;
+            }
+            builder.append(head.getName());
+            if (Strings.isNotBlank(objectId)) {
+                builder.append("/").append(objectId);
+            }
+            File index = repository.getIndexFile();
+            builder.append("/").append(index.lastModified()).append("/").append(index.length());
+        }
+        return new EntityTag(MD5Util.md5Hex(builder.toString()), true);
+    }
+
+    protected static boolean matchesEntityTag(String ifNoneMatch, EntityTag tag) {
+        if (Strings.isNullOrBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String value : ifNoneMatch.split(",")) {
+            value = value.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            // weak comparison ignores the W/ prefix
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("\"" + tag.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs the read operation on the {@link GitOperationExecutor} resuming the response with its result
+     */
+    public <T> void gitReadOperation(AsyncResponse asyncResponse, GitOperation<T> operation) {
+        GitContext context = new GitContext();
+        context.setRequireCommit(false);
+        context.setRequirePush(false);
+        gitOperation(asyncResponse, context, operation);
+    }
+
+    /**
+     * Performs the write operation on the {@link GitOperationExecutor} resuming the response with its result
+     */
+    public <T> void gitWriteOperation(AsyncResponse asyncResponse, GitOperation<T> operation) {
+        GitContext context = new GitContext();
+        context.setRequireCommit(true);
+        context.setRequirePush(true);
+        gitOperation(asyncResponse, context, operation);
+    }
+
+    protected <T> void gitOperation(AsyncResponse asyncResponse, final GitContext context, final GitOperation<T> operation) {
+        execute(asyncResponse, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return gitOperation(context, operation);
+            }
+        });
+    }
+
+    /**
+     * Runs the task on the executor for this repository; or on the current thread if there is no executor
+     */
+    protected <T> void execute(AsyncResponse asyncResponse, Callable<T> task) {
+        if (executor != null) {
+            executor.execute(gitFolder.getPath(), asyncResponse, task);
+        } else {
+            try {
+                asyncResponse.resume(task.call());
+            } catch (Throwable e) {
+                asyncResponse.resume(e);
+            }
+        }
+    }
+
     public <T> T gitReadOperation(GitOperation<T> operation) throws Exception {
         return gitReadOperation(operation, new GitContext());
     }
@@ -754,14 +1288,9 @@ public class RepositoryResource {
 
             @Override
             public T call() throws Exception {
-                projectFileSystem.cloneRepoIfNotExist(userDetails, basedir, cloneUrl);
-
-                FileRepositoryBuilder builder = new FileRepositoryBuilder();
-                Repository repository = builder.setGitDir(gitFolder)
-                        .readEnvironment() // scan environment GIT_* variables
-                        .findGitDir() // scan up the file system tree
-                        .build();
+                cloneRepoIfNotExist();
 
+                Repository repository = openRepository();
                 Git git = new Git(repository);
                 if (Strings.isNullOrBlank(origin)) {
                     throw new IOException("Could not find remote git URL for folder " + gitFolder.getPath());
@@ -782,7 +1311,7 @@ public class RepositoryResource {
                 if (hasHead) {
                     // lets stash any local changes just in case..
                     try {
-                        git.stashCreate().setPerson(personIdent).setWorkingDirectoryMessage("Stash before a write").setRef("HEAD").call();
+                        git.stashCreate().setPerson(personIdent).setWorkingDirectoryMessage(RepositoryMaintenance.FORGE_STASH_MESSAGE).setRef("HEAD").call();
                     } catch (Throwable e) {
                         LOG.error("Failed to stash changes: " + e, e);
                         Throwable cause = e.getCause();
@@ -793,9 +1322,10 @@ public class RepositoryResource {
                 }
 
                 checkoutBranch(git, context);
-                if (context.isRequirePull()) {
+                if (context.isRequirePull() && !isSyncedByWebhook(context)) {
                     doPull(git, context);
                 }
+                ObjectId before = context.isRequireCommit() ? repository.resolve(Constants.HEAD) : null;
 
                 T result = operation.call(git, context);
 
@@ -805,12 +1335,48 @@ public class RepositoryResource {
                 if (context.isRequireCommit() && hasGitChanges(git)) {
                     doAddCommitAndPushFiles(git, userDetails, personIdent, branch, origin, message, isPushOnCommit());
                 }
+                if (context.isRequireCommit()) {
+                    ObjectId after = repository.resolve(Constants.HEAD);
+                    if (after != null && !Objects.equals(before, after)) {
+                        fireCommitted(after);
+                    }
+                }
                 return result;
             }
 
         });
     }
 
+    protected void fireCommitted(ObjectId commitId) {
+        if (repositoryEvents != null) {
+            String key = RepositoryEvents.getRepositoryKey(cloneUrl);
+            repositoryEvents.fireEvent(new RepositoryEvent(RepositoryEvent.Type.COMMITTED, key, gitFolder, branch, commitId.getName()));
+        }
+    }
+
+    /**
+     * Reads can skip the pull if a push webhook recently brought the clone up to date
+     */
+    protected boolean isSyncedByWebhook(GitContext context) {
+        return !context.isRequireCommit() && repositoryEvents != null && repositoryEvents.isSynced(gitFolder);
+    }
+
+    protected File cloneRepoIfNotExist() throws Exception {
+        if (workTrees != null && sharedProjectFolder != null && !Objects.equals(sharedProjectFolder, basedir)) {
+            workTrees.cloneWorkTreeIfNotExist(userDetails, sharedProjectFolder, basedir, cloneUrl);
+            return basedir;
+        }
+        return projectFileSystem.cloneRepoIfNotExist(userDetails, basedir, cloneUrl);
+    }
+
+    protected Repository openRepository() throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder();
+        return builder.setGitDir(gitFolder)
+                .readEnvironment() // scan environment GIT_* variables
+                .findGitDir() // scan up the file system tree
+                .build();
+    }
+
     protected boolean hasGitChanges(Git git) throws GitAPIException {
         Status status = git.status().call();
         return anySetsNotEmpty(status.getAdded(), status.getChanged(), status.getModified(), status.getRemoved());
@@ -840,25 +1406,76 @@ public class RepositoryResource {
         LOG.info("Completed pull in git repository " + this.gitFolder + " on remote URL: " + this.remoteRepository);
     }
 
-    protected Response uploadFile(final String path, final String message, final InputStream body) throws Exception {
-        return gitWriteOperation(new GitOperation<Response>() {
+    protected void uploadFile(final String path, final String message, final byte[] contents, AsyncResponse asyncResponse) {
+        if (isUnchanged(path, contents)) {
+            // lets avoid the lock, pull and commit for autosaves of unchanged files
+            asyncResponse.resume(Response.ok(new StatusDTO(path, STATUS_UNCHANGED)).build());
+            return;
+        }
+        gitWriteOperation(asyncResponse, new GitOperation<Response>() {
             @Override
             public Response call(Git git, GitContext context) throws Exception {
-                return doUploadFile(path, message, body);
+                return doUploadFile(path, message, contents);
             }
         });
     }
 
-    protected Response doUploadFile(final String path, String message, final InputStream body) throws Exception {
+    /**
+     * Returns true if the clone is in sync with the remote repository, the branch of this resource is checked out and
+     * the content hashes to the blob which is both committed and in the index for the path and the working copy has
+     * the same content. This runs without the repository lock; if it races with another write or the clone may be
+     * behind the remote repository then the upload just takes the usual path which checks again after the pull.
+     */
+    protected boolean isUnchanged(String path, byte[] contents) {
+        if (!Files.isDirectory(gitFolder) || !isCloneInSync()) {
+            return false;
+        }
+        String blobPath = trimLeadingSlash(path);
+        try {
+            ObjectId contentId = idFor(contents);
+            Repository repository = openRepository();
+            try {
+                if (!Objects.equals(Constants.R_HEADS + branch, repository.getFullBranch())) {
+                    // the write operation will switch branches so the working copy says nothing about this branch
+                    return false;
+                }
+                DirCacheEntry entry = DirCache.read(repository).getEntry(blobPath);
+                if (entry == null || !contentId.equals(entry.getObjectId())) {
+                    return false;
+                }
+                ObjectId head = repository.resolve(Constants.HEAD + "^{tree}");
+                if (head == null) {
+                    return false;
+                }
+                try (TreeWalk treeWalk = TreeWalk.forPath(repository, blobPath, head)) {
+                    if (treeWalk == null || !contentId.equals(treeWalk.getObjectId(0))) {
+                        return false;
+                    }
+                }
+            } finally {
+                repository.close();
+            }
+            File file = getRelativeFile(path);
+            return file.isFile() && file.length() == contents.length && Arrays.equals(Files.readBytes(file), contents);
+        } catch (Exception e) {
+            LOG.debug("Failed to compare the upload of " + path + " with the index: " + e, e);
+            return false;
+        }
+    }
+
+    protected Response doUploadFile(final String path, String message, final byte[] contents) throws Exception {
         this.message = message;
         final File file = getRelativeFile(path);
 
         boolean exists = file.exists();
+        if (exists && file.isFile() && file.length() == contents.length && Arrays.equals(Files.readBytes(file), contents)) {
+            return Response.ok(new StatusDTO(path, STATUS_UNCHANGED)).build();
+        }
         if (LOG.isDebugEnabled()) {
             LOG.debug("writing file: " + file.getPath());
         }
         file.getParentFile().mkdirs();
-        IOHelpers.writeTo(file, body);
+        Files.writeToFile(file, contents);
         String status = exists ? "updated" : "created";
         return Response.ok(new StatusDTO(path, status)).build();
     }
@@ -1056,7 +1673,14 @@ public class RepositoryResource {
             return null;
         }
         // TODO use the path to generate the links...
-        // TODO generate the SHA
+        if (includeContent && file.isFile()) {
+            // the blob id is the base to use when patching the file
+            try {
+                answer.setSha(idFor(Files.readBytes(file)).getName());
+            } catch (IOException e) {
+                LOG.warn("Failed to read " + file.getPath() + ". " + e, e);
+            }
+        }
         return answer;
     }
 
@@ -1082,6 +1706,29 @@ public class RepositoryResource {
         return command.setRemote(getRemote()).call();
     }
 
+    /**
+     * Pushes just the local branch to the remote branch
+     */
+    protected Iterable<PushResult> doPushBranch(Git git) throws GitAPIException {
+        PushCommand command = git.push();
+        configureCommand(command, userDetails);
+        String refName = Constants.R_HEADS + branch;
+        Iterable<PushResult> results = command.setRemote(getRemote()).setRefSpecs(new RefSpec(refName + ":" + refName)).call();
+        for (PushResult result : results) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Pushed " + result.getMessages() + " " + result.getURI() + " branch: " + branch + " updates: " + toString(result.getRemoteUpdates()));
+            }
+        }
+        return results;
+    }
+
+    protected void doFetch(Git git) throws GitAPIException {
+        disableSslCertificateChecks();
+        FetchCommand command = git.fetch();
+        configureCommand(command, userDetails);
+        command.setRemote(getRemote()).call();
+    }
+
     public String getCloneUrl() {
         return cloneUrl;
     }
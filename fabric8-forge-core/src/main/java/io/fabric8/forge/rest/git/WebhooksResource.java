@@ -0,0 +1,327 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.forge.rest.main.GitUserHelper;
+import io.fabric8.forge.rest.main.ProjectFileSystem;
+import io.fabric8.forge.rest.main.UserDetails;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PullCommand;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.annotation.PreDestroy;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static io.fabric8.forge.rest.main.GitHelpers.configureCommand;
+
+/**
+ * Receives the push webhooks of Gogs so that the cached clones of the pushed repository are updated in the background
+ * rather than on the next request.
+ * <p/>
+ * Configure a webhook in Gogs for push events with the URL <code>http://fabric8-forge/api/forge/webhooks/gogs</code>
+ * and content type <code>application/json</code> and the secret set in <code>FORGE_WEBHOOK_SECRET</code>; webhooks
+ * are rejected if no secret is set.
+ * <p/>
+ * The request thread only checks the webhook; finding the clones of the repository and updating them happens on a
+ * single background thread which keeps an index of the clones by repository, refreshed every
+ * <code>FORGE_WEBHOOK_CLONE_INDEX_SECONDS</code> or sooner when a repository has no clones in the index.
+ */
+@Path("/api/forge/webhooks")
+@Produces(MediaType.APPLICATION_JSON)
+@Singleton
+public class WebhooksResource {
+    private static final transient Logger LOG = LoggerFactory.getLogger(WebhooksResource.class);
+    public static final String PUSH_EVENT = "push";
+    private static final long MIN_CLONE_INDEX_MILLIS = 10 * 1000;
+
+    protected static long cloneIndexSeconds = Long.parseLong(Systems.getEnvVarOrSystemProperty("FORGE_WEBHOOK_CLONE_INDEX_SECONDS", "300"));
+
+    private final GitUserHelper gitUserHelper;
+    private final ProjectFileSystem projectFileSystem;
+    private final GitLockManager lockManager;
+    private final RepositoryMaintenance repositoryMaintenance;
+    private final RepositoryEvents repositoryEvents;
+    private final String secret;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "forge-webhooks");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Set<File> pendingSyncs = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    // only used on the executor thread
+    private final Map<String, Set<File>> clonesByKey = new HashMap<>();
+    private long clonesIndexedTime;
+
+    @Inject
+    public WebhooksResource(GitUserHelper gitUserHelper, ProjectFileSystem projectFileSystem, GitLockManager lockManager,
+                            RepositoryMaintenance repositoryMaintenance, RepositoryEvents repositoryEvents,
+                            @ConfigProperty(name = "FORGE_WEBHOOK_SECRET", defaultValue = "") String secret) {
+        this.gitUserHelper = gitUserHelper;
+        this.projectFileSystem = projectFileSystem;
+        this.lockManager = lockManager;
+        this.repositoryMaintenance = repositoryMaintenance;
+        this.repositoryEvents = repositoryEvents;
+        this.secret = secret;
+        if (Strings.isNullOrBlank(secret)) {
+            LOG.warn("FORGE_WEBHOOK_SECRET is not set so all gogs webhooks will be rejected; set it to the secret of the webhooks to enable them");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdown();
+    }
+
+    @POST
+    @Path("gogs")
+    @Consumes(MediaType.WILDCARD)
+    public Response gogs(@HeaderParam("X-Gogs-Event") String event, @HeaderParam("X-Gogs-Signature") String signature, byte[] body) throws IOException {
+        if (Strings.isNotBlank(event) && !Objects.equals(PUSH_EVENT, event)) {
+            return Response.ok().build();
+        }
+        JsonNode payload = objectMapper.readTree(body);
+        if (!isAuthorized(payload, signature, body)) {
+            LOG.warn(Strings.isNullOrBlank(secret) ? "Rejecting webhook as FORGE_WEBHOOK_SECRET is not set" : "Ignoring webhook with an invalid secret");
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        String ref = payload.path("ref").asText();
+        if (!ref.startsWith(Constants.R_HEADS)) {
+            return Response.ok().build();
+        }
+        final String branch = ref.substring(Constants.R_HEADS.length());
+        JsonNode repository = payload.path("repository");
+        String cloneUrl = repository.path("clone_url").asText(repository.path("url").asText());
+        final String key = RepositoryEvents.getRepositoryKey(cloneUrl);
+        if (Strings.isNullOrBlank(key)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("No repository URL in the payload").type(MediaType.TEXT_PLAIN).build();
+        }
+        final String commitId = payload.path("after").asText();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    onPush(key, branch, commitId);
+                } catch (Exception e) {
+                    LOG.warn("Failed to handle the push of " + branch + " to " + key + ". " + e, e);
+                }
+            }
+        });
+        return Response.ok().build();
+    }
+
+    /**
+     * Notifies the clones of the pushed repository and schedules their update; invoked on the executor thread
+     */
+    protected void onPush(String key, String branch, String commitId) {
+        List<File> gitFolders = findClones(key);
+        for (File gitFolder : gitFolders) {
+            String checkedOutBranch = getBranch(gitFolder);
+            if (Objects.equals(checkedOutBranch, branch)) {
+                repositoryEvents.fireEvent(new RepositoryEvent(RepositoryEvent.Type.PUSHED, key, gitFolder, branch, commitId));
+            }
+            scheduleSync(key, gitFolder, branch);
+        }
+        LOG.info("Received push of " + branch + " to " + key + " updating " + gitFolders.size() + " clones");
+    }
+
+    /**
+     * Returns the git folders of the cached clones whose remote refers to the given repository; invoked on the
+     * executor thread
+     */
+    protected List<File> findClones(String key) {
+        long age = System.currentTimeMillis() - clonesIndexedTime;
+        if (age > cloneIndexSeconds * 1000 || (!clonesByKey.containsKey(key) && age > MIN_CLONE_INDEX_MILLIS)) {
+            indexClones();
+        }
+        List<File> answer = new ArrayList<>();
+        Set<File> clones = clonesByKey.get(key);
+        if (clones != null) {
+            for (File gitFolder : clones) {
+                if (gitFolder.isDirectory()) {
+                    answer.add(gitFolder);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Indexes the git folders of the cached clones by the key of the repository of their remote
+     */
+    protected void indexClones() {
+        clonesByKey.clear();
+        String remote = projectFileSystem.getRemote();
+        for (File gitFolder : repositoryMaintenance.findGitFolders()) {
+            try {
+                Repository repository = openRepository(gitFolder);
+                try {
+                    String url = repository.getConfig().getString("remote", remote, "url");
+                    String key = RepositoryEvents.getRepositoryKey(url);
+                    if (key != null) {
+                        Set<File> clones = clonesByKey.get(key);
+                        if (clones == null) {
+                            clones = new LinkedHashSet<>();
+                            clonesByKey.put(key, clones);
+                        }
+                        clones.add(gitFolder);
+                    }
+                } finally {
+                    repository.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read the remote of " + gitFolder + ". " + e, e);
+            }
+        }
+        clonesIndexedTime = System.currentTimeMillis();
+    }
+
+    protected void scheduleSync(final String key, final File gitFolder, final String branch) {
+        if (!pendingSyncs.add(gitFolder)) {
+            // a sync of this clone is already queued and it will pick up this push too
+            return;
+        }
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                pendingSyncs.remove(gitFolder);
+                try {
+                    syncClone(key, gitFolder, branch);
+                } catch (Exception e) {
+                    LOG.warn("Failed to update " + gitFolder + " after a push to " + key + ". " + e, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Pulls the pushed branch if it is checked out in the clone or just fetches it otherwise
+     */
+    protected void syncClone(final String key, final File gitFolder, final String branch) throws Exception {
+        lockManager.withLock(gitFolder, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Repository repository = openRepository(gitFolder);
+                try {
+                    Git git = new Git(repository);
+                    UserDetails userDetails = gitUserHelper.createUserDetails(null);
+                    String remote = projectFileSystem.getRemote();
+                    if (Objects.equals(repository.getBranch(), branch)) {
+                        PullCommand pull = git.pull().setRemote(remote).setRebase(true);
+                        configureCommand(pull, userDetails);
+                        pull.call();
+                        ObjectId head = repository.resolve(Constants.HEAD);
+                        repositoryEvents.fireEvent(new RepositoryEvent(RepositoryEvent.Type.UPDATED, key, gitFolder, branch, head != null ? head.getName() : null));
+                    } else {
+                        FetchCommand fetch = git.fetch().setRemote(remote);
+                        configureCommand(fetch, userDetails);
+                        fetch.call();
+                    }
+                } finally {
+                    repository.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    protected boolean isAuthorized(JsonNode payload, String signature, byte[] body) {
+        if (Strings.isNullOrBlank(secret)) {
+            return false;
+        }
+        if (Strings.isNotBlank(signature)) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+                String expected = toHex(mac.doFinal(body));
+                return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), signature.trim().toLowerCase().getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                LOG.warn("Failed to verify the webhook signature: " + e, e);
+                return false;
+            }
+        }
+        // older versions of gogs send the secret in the payload
+        String payloadSecret = payload.path("secret").asText();
+        return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), payloadSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected String getBranch(File gitFolder) {
+        try {
+            Repository repository = openRepository(gitFolder);
+            try {
+                return repository.getBranch();
+            } finally {
+                repository.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to find the branch of " + gitFolder + ". " + e, e);
+            return null;
+        }
+    }
+
+    protected static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    protected static Repository openRepository(File gitFolder) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(gitFolder).readEnvironment().build();
+    }
+}
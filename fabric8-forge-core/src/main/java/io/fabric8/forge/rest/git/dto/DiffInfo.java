@@ -26,14 +26,27 @@ public class DiffInfo extends GitDTOSupport {
     private final String oldPath;
     private final int oldMode;
     private final String diff;
+    private final Integer linesAdded;
+    private final Integer linesDeleted;
+    private final Boolean binary;
+    private final Boolean tooLarge;
 
     public DiffInfo(DiffEntry.ChangeType changeType, String newPath, int newMode, String oldPath, int oldMode, String diff) {
+        this(changeType, newPath, newMode, oldPath, oldMode, diff, null, null, null, null);
+    }
+
+    public DiffInfo(DiffEntry.ChangeType changeType, String newPath, int newMode, String oldPath, int oldMode, String diff,
+                    Integer linesAdded, Integer linesDeleted, Boolean binary, Boolean tooLarge) {
         this.changeType = changeType;
         this.newPath = newPath;
         this.newMode = newMode;
         this.oldPath = oldPath;
         this.oldMode = oldMode;
         this.diff = diff;
+        this.linesAdded = linesAdded;
+        this.linesDeleted = linesDeleted;
+        this.binary = binary;
+        this.tooLarge = tooLarge;
     }
 
     @Override
@@ -68,4 +81,29 @@ public class DiffInfo extends GitDTOSupport {
     public String getOldPath() {
         return oldPath;
     }
+
+    /**
+     * Returns the number of lines added or null if they were not counted
+     */
+    public Integer getLinesAdded() {
+        return linesAdded;
+    }
+
+    /**
+     * Returns the number of lines deleted or null if they were not counted
+     */
+    public Integer getLinesDeleted() {
+        return linesDeleted;
+    }
+
+    public Boolean getBinary() {
+        return binary;
+    }
+
+    /**
+     * Returns true if either side of the change was too large to diff
+     */
+    public Boolean getTooLarge() {
+        return tooLarge;
+    }
 }
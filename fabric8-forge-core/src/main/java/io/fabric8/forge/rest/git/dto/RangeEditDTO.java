@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git.dto;
+
+/**
+ * Replaces the lines from <code>start</code> up to but excluding <code>end</code> (counting from zero) with the
+ * given text; which should end with a new line unless it is empty or replaces the end of the file
+ */
+public class RangeEditDTO extends GitDTOSupport {
+    private int start;
+    private int end;
+    private String text;
+
+    public RangeEditDTO() {
+    }
+
+    public RangeEditDTO(int start, int end, String text) {
+        this.start = start;
+        this.end = end;
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return "RangeEditDTO{" +
+                "start=" + start +
+                ", end=" + end +
+                '}';
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public void setEnd(int end) {
+        this.end = end;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
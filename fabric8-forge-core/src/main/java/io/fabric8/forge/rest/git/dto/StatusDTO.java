@@ -21,10 +21,16 @@ package io.fabric8.forge.rest.git.dto;
 public class StatusDTO extends GitDTOSupport {
     private final String operation;
     private final String file;
+    private final String objectId;
 
     public StatusDTO(String file, String operation) {
+        this(file, operation, null);
+    }
+
+    public StatusDTO(String file, String operation, String objectId) {
         this.file = file;
         this.operation = operation;
+        this.objectId = objectId;
     }
 
     @Override
@@ -42,4 +48,11 @@ public class StatusDTO extends GitDTOSupport {
     public String getOperation() {
         return operation;
     }
+
+    /**
+     * Returns the blob id of the new content of the file if known
+     */
+    public String getObjectId() {
+        return objectId;
+    }
 }
@@ -27,7 +27,11 @@ import javax.servlet.http.HttpServletRequest;
  * Perform any hooks after a command has completed such as working with a source control system
  */
 public interface CommandCompletePostProcessor {
-    void firePostCompleteActions(String name, ExecutionRequest executionRequest, RestUIContext context, CommandController controller, ExecutionResult results, HttpServletRequest request);
+    /**
+     * Invoked once the command has completed, which may be on a background thread after the request has finished,
+     * so the user details are those returned by {@link #preprocessRequest} on the request thread
+     */
+    void firePostCompleteActions(String name, ExecutionRequest executionRequest, RestUIContext context, CommandController controller, ExecutionResult results, UserDetails userDetails);
 
     UserDetails preprocessRequest(String name, ExecutionRequest executionRequest, HttpServletRequest request);
 }
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import io.fabric8.forge.rest.dto.CommandIndexDTO;
+import io.fabric8.forge.rest.model.Models;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of the commands of the addons in the addon repository which is loaded from
+ * <code>fabric8-forge-commands.json</code> in the addon directory; so that commands of addons which have not
+ * started yet can be listed and their addon started on first use.
+ * <p/>
+ * The index is generated when building the addon repository of the fabric8-forge app by
+ * <code>CommandIndexGenerator</code>, so the commands can be listed without loading them
+ */
+@Singleton
+public class CommandIndex {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandIndex.class);
+    public static final String INDEX_FILE_NAME = "fabric8-forge-commands.json";
+
+    private final List<CommandIndexDTO> commands = new ArrayList<>();
+    private final Map<String, CommandIndexDTO> commandsByName = new HashMap<>();
+
+    @Inject
+    public CommandIndex(@ConfigProperty(name = "FORGE_ADDON_DIRECTORY", defaultValue = "./addon-repository") String addOnDir) {
+        this(new File(addOnDir, INDEX_FILE_NAME));
+    }
+
+    public CommandIndex(File file) {
+        try {
+            for (CommandIndexDTO command : Models.loadJsonValues(file, CommandIndexDTO.class)) {
+                if (command.getCommandName() == null) {
+                    command.setCommandName(command.getName());
+                }
+                if (command.getCommandName() != null) {
+                    commands.add(command);
+                    // commands are looked up by their listed name, their id or their display name
+                    for (String name : Arrays.asList(command.getId(), command.getName(), command.getCommandName())) {
+                        if (name != null && !commandsByName.containsKey(name)) {
+                            commandsByName.put(name, command);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to load the command index " + file + ". " + e, e);
+        }
+        if (commands.isEmpty()) {
+            LOG.info("No command index found at " + file + " so commands of lazy addons are only listed once they have started");
+        } else {
+            LOG.info("Loaded " + commands.size() + " commands from the command index " + file);
+        }
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Returns the indexed command of the given name, id or display name or null if it is not indexed
+     */
+    public CommandIndexDTO getCommand(String name) {
+        return name != null ? commandsByName.get(name) : null;
+    }
+
+    public List<CommandIndexDTO> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+}
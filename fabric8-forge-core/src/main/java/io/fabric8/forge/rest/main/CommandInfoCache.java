@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import io.fabric8.forge.rest.dto.CommandInfoDTO;
+import io.fabric8.utils.Files;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the list of commands enabled for a project, keyed by the project folder, the commit at the tip of its
+ * checked out branch and a hash of its <code>pom.xml</code>; as working out whether each command is enabled can
+ * resolve the maven model or scan the sources of the project.
+ * <p/>
+ * The commands are checked on a small pool of threads so that a cache miss does not take as long as checking every
+ * command one after the other; each thread checks its own batch of commands with its own UI context as a context and
+ * the project it resolves are not safe to share between threads.
+ */
+@Singleton
+public class CommandInfoCache {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandInfoCache.class);
+    private static final String NO_PROJECT = "";
+
+    private final Map<String, List<CommandInfoDTO>> cache;
+    private final ExecutorService executorService;
+    private final int threads;
+
+    /**
+     * @param maxEntries the maximum number of project command lists to cache; 0 disables the cache
+     * @param threads    the number of threads used to check which commands are enabled; 1 checks them on the
+     *                   calling thread
+     */
+    @Inject
+    public CommandInfoCache(@ConfigProperty(name = "FORGE_COMMAND_CACHE_SIZE", defaultValue = "200") final int maxEntries,
+                            @ConfigProperty(name = "FORGE_COMMAND_THREADS", defaultValue = "4") int threads) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, List<CommandInfoDTO>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<CommandInfoDTO>> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.threads = Math.max(threads, 1);
+        if (threads > 1) {
+            final AtomicInteger counter = new AtomicInteger();
+            this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "forge-commands-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            this.executorService = null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Returns the key of the cached command list for the project folder or null if it cannot be cached
+     *
+     * @param directory the project folder or null if there is no project
+     */
+    public String getKey(File directory) {
+        if (directory == null) {
+            return NO_PROJECT;
+        }
+        try {
+            String head = getHead(directory);
+            if (head == null) {
+                return null;
+            }
+            return directory.getCanonicalPath() + ":" + head + ":" + hashPom(new File(directory, "pom.xml"));
+        } catch (IOException e) {
+            LOG.warn("Failed to find the command cache key of " + directory + ". " + e, e);
+            return null;
+        }
+    }
+
+    public List<CommandInfoDTO> get(String key) {
+        if (key == null) {
+            return null;
+        }
+        return cache.get(key);
+    }
+
+    public void put(String key, List<CommandInfoDTO> commands) {
+        if (key != null) {
+            cache.put(key, Collections.unmodifiableList(new ArrayList<>(commands)));
+        }
+    }
+
+    /**
+     * Returns the number of batches the commands should be split into; one per thread
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Creates the command details of each batch in parallel, returning them in the same order as the batches. The
+     * batches are run with the context class loader of the calling thread.
+     */
+    public List<CommandInfoDTO> createCommandInfos(List<Callable<List<CommandInfoDTO>>> batches) throws InterruptedException {
+        List<CommandInfoDTO> answer = new ArrayList<>();
+        if (executorService == null || batches.size() <= 1) {
+            for (Callable<List<CommandInfoDTO>> batch : batches) {
+                try {
+                    answer.addAll(batch.call());
+                } catch (Exception e) {
+                    LOG.warn("Failed to create command details: " + e, e);
+                }
+            }
+            return answer;
+        }
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Callable<List<CommandInfoDTO>>> tasks = new ArrayList<>();
+        for (final Callable<List<CommandInfoDTO>> batch : batches) {
+            tasks.add(new Callable<List<CommandInfoDTO>>() {
+                @Override
+                public List<CommandInfoDTO> call() throws Exception {
+                    Thread thread = Thread.currentThread();
+                    ClassLoader oldClassLoader = thread.getContextClassLoader();
+                    thread.setContextClassLoader(classLoader);
+                    try {
+                        return batch.call();
+                    } finally {
+                        thread.setContextClassLoader(oldClassLoader);
+                    }
+                }
+            });
+        }
+        List<Future<List<CommandInfoDTO>>> futures = executorService.invokeAll(tasks);
+        for (Future<List<CommandInfoDTO>> future : futures) {
+            try {
+                answer.addAll(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                LOG.warn("Failed to create command details: " + cause, cause);
+            }
+        }
+        return answer;
+    }
+
+    protected static String getHead(File directory) throws IOException {
+        File gitDir = new File(directory, ".git");
+        if (!gitDir.exists()) {
+            return null;
+        }
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(gitDir).build()) {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            return head != null ? head.getName() : null;
+        }
+    }
+
+    protected static String hashPom(File pom) throws IOException {
+        if (!pom.isFile()) {
+            return "nopom";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, digest.digest(Files.readBytes(pom))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Failed to hash " + pom + ". " + e, e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import io.fabric8.forge.rest.dto.CommandJobDTO;
+import io.fabric8.forge.rest.ui.CommandResponseListener;
+import org.jboss.forge.addon.ui.progress.DefaultUIProgressMonitor;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * A command executed in the background whose result the client polls for; see {@link CommandJobs}
+ */
+public class CommandJob implements CommandResponseListener {
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final String commandName;
+    private final String user;
+    private final DefaultUIProgressMonitor progressMonitor = new DefaultUIProgressMonitor();
+    private final long created = System.currentTimeMillis();
+    private volatile Status status = Status.QUEUED;
+    private volatile Long started;
+    private volatile Long finished;
+    private volatile Object result;
+    private volatile String error;
+
+    public CommandJob(String id, String commandName, String user) {
+        this.id = id;
+        this.commandName = commandName;
+        this.user = user;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandJob{" +
+                "id='" + id + '\'' +
+                ", commandName='" + commandName + '\'' +
+                ", user='" + user + '\'' +
+                ", status=" + status +
+                '}';
+    }
+
+    public CommandJobDTO toDTO() {
+        return new CommandJobDTO(id, commandName, status.name().toLowerCase(), created, started, finished, result, error);
+    }
+
+    /**
+     * Marks the job as running unless it was cancelled while it was queued
+     */
+    public synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        started = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Asks the job to stop; a queued job will not run and a running command is told via its progress monitor
+     */
+    public synchronized boolean cancel() {
+        if (isDone()) {
+            return false;
+        }
+        progressMonitor.setCancelled(true);
+        if (status == Status.QUEUED) {
+            finish(Status.CANCELLED);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void onResponse(Object response) {
+        if (isDone()) {
+            return;
+        }
+        Object entity = response;
+        int statusCode = Response.Status.OK.getStatusCode();
+        if (response instanceof Response) {
+            entity = ((Response) response).getEntity();
+            statusCode = ((Response) response).getStatus();
+        }
+        if (statusCode >= 300) {
+            error = "HTTP " + statusCode + (entity != null ? ": " + entity : "");
+            finish(Status.FAILED);
+        } else {
+            result = entity;
+            finish(progressMonitor.isCancelled() ? Status.CANCELLED : Status.COMPLETED);
+        }
+    }
+
+    @Override
+    public synchronized void onFailure(Throwable e) {
+        if (isDone()) {
+            return;
+        }
+        error = "" + e;
+        finish(progressMonitor.isCancelled() ? Status.CANCELLED : Status.FAILED);
+    }
+
+    protected void finish(Status status) {
+        this.status = status;
+        this.finished = System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean isDone() {
+        return finished != null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return progressMonitor.isCancelled();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getFinished() {
+        return finished;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public DefaultUIProgressMonitor getProgressMonitor() {
+        return progressMonitor;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the commands users have submitted to run in the background. Each user can only have a few jobs
+ * queued or running at once; finished jobs are kept for a while so their results can be polled.
+ */
+@Singleton
+public class CommandJobs {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandJobs.class);
+
+    private final Map<String, CommandJob> jobs = new ConcurrentHashMap<>();
+    private final int maxJobsPerUser;
+    private final long retentionMillis;
+
+    /**
+     * @param maxJobsPerUser   the maximum number of queued or running jobs of each user
+     * @param retentionMinutes how long the results of finished jobs are kept
+     */
+    @Inject
+    public CommandJobs(@ConfigProperty(name = "FORGE_JOBS_PER_USER", defaultValue = "2") int maxJobsPerUser,
+                       @ConfigProperty(name = "FORGE_JOB_RETENTION_MINUTES", defaultValue = "30") int retentionMinutes) {
+        this.maxJobsPerUser = maxJobsPerUser;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+    }
+
+    /**
+     * Creates a new job or returns null if the user already has too many jobs queued or running
+     */
+    public synchronized CommandJob create(String commandName, String user) {
+        removeExpiredJobs();
+        int active = 0;
+        for (CommandJob job : jobs.values()) {
+            if (!job.isDone() && Objects.equals(user, job.getUser())) {
+                active++;
+            }
+        }
+        if (active >= maxJobsPerUser) {
+            LOG.info("Rejecting job for " + commandName + " as user " + user + " already has " + active + " jobs");
+            return null;
+        }
+        CommandJob job = new CommandJob(UUID.randomUUID().toString(), commandName, user);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * Returns the job of the user or null if there is no such job
+     */
+    public CommandJob get(String id, String user) {
+        CommandJob job = jobs.get(id);
+        if (job == null || !Objects.equals(user, job.getUser())) {
+            return null;
+        }
+        return job;
+    }
+
+    protected void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        Iterator<CommandJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            Long finished = iterator.next().getFinished();
+            if (finished != null && now - finished > retentionMillis) {
+                iterator.remove();
+            }
+        }
+    }
+}
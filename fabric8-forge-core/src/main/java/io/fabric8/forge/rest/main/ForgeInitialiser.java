@@ -18,6 +18,8 @@ package io.fabric8.forge.rest.main;
 import io.fabric8.forge.rest.CommandsResource;
 import io.fabric8.forge.rest.dto.CommandInfoDTO;
 import io.fabric8.forge.rest.dto.ExecutionRequest;
+import io.fabric8.forge.rest.dto.ValidationResult;
+import io.fabric8.forge.rest.git.RepositoryMaintenance;
 import io.fabric8.forge.rest.hooks.CommandCompletePostProcessor;
 import io.fabric8.forge.rest.producer.FurnaceProducer;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
@@ -30,11 +32,22 @@ import javax.inject.Singleton;
 import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Initialises Forge add on repository
@@ -45,15 +58,35 @@ import java.util.Map;
 public class ForgeInitialiser {
     private static final transient Logger LOG = LoggerFactory.getLogger(ForgeInitialiser.class);
     public static final String DEFAULT_ARCHETYPES_VERSION = "2.2.34";
+    public static final String STAGE_COMMANDS = "commands";
+    public static final String STAGE_ARCHETYPES = "archetypes";
+    public static final String STAGE_VALIDATE = "validate";
+    public static final List<String> WARM_UP_STAGES = Collections.unmodifiableList(Arrays.asList(STAGE_COMMANDS, STAGE_ARCHETYPES, STAGE_VALIDATE));
+
+    private final Map<String, String> stageStatuses = new ConcurrentHashMap<>();
+    private final boolean trainingRun;
+    private final int warmUpTimeoutSeconds;
+    private volatile boolean ready;
 
     /**
-     * @param addOnDir the directory where Forge addons will be stored
+     * @param addOnDir        the directory where Forge addons will be stored
+     * @param trainingRun     whether to exit the JVM once warmed up so that it dumps its class data sharing archive
+     * @param lazyAddonGroups the groups of addons which are only started on first use of one of their commands
+     * @param warmUpTimeoutSeconds how long the warm up can take before its unfinished stages are failed
      */
     @Inject
-    public ForgeInitialiser(@ConfigProperty(name = "FORGE_ADDON_DIRECTORY", defaultValue = "./addon-repository") String addOnDir, FurnaceProducer furnaceProducer) {
+    public ForgeInitialiser(@ConfigProperty(name = "FORGE_ADDON_DIRECTORY", defaultValue = "./addon-repository") String addOnDir, FurnaceProducer furnaceProducer, RepositoryMaintenance repositoryMaintenance, GitStorageProfile gitStorageProfile,
+                            @ConfigProperty(name = "FORGE_CDS_TRAINING", defaultValue = "false") boolean trainingRun,
+                            @ConfigProperty(name = "FORGE_LAZY_ADDON_GROUPS", defaultValue = "camel=io.fabric8.forge:camel;devops=io.fabric8.forge:devops,io.fabric8.forge:kubernetes") String lazyAddonGroups,
+                            @ConfigProperty(name = "FORGE_ADDON_START_TIMEOUT_SECONDS", defaultValue = "120") int addonStartTimeoutSeconds,
+                            @ConfigProperty(name = "FORGE_WARMUP_TIMEOUT_SECONDS", defaultValue = "600") int warmUpTimeoutSeconds) {
+        this.trainingRun = trainingRun;
+        this.warmUpTimeoutSeconds = warmUpTimeoutSeconds;
         java.util.logging.Logger out = java.util.logging.Logger.getLogger(this.getClass().getName());
         out.info("Logging to JUL to test the configuration");
 
+        gitStorageProfile.install();
+
         // lets ensure that the addons folder is initialised
         File repoDir = new File(addOnDir);
         repoDir.mkdirs();
@@ -64,14 +97,179 @@ public class ForgeInitialiser {
         } else {
             LOG.warn("Found " + files.length + " addon files in directory: " + repoDir.getAbsolutePath());
         }
-        furnaceProducer.setup(repoDir);
+        furnaceProducer.setup(repoDir, FurnaceProducer.parseAddonGroups(lazyAddonGroups), addonStartTimeoutSeconds);
+        repositoryMaintenance.start();
+    }
+
+    /**
+     * Warms up Forge in the background by running the {@link #WARM_UP_STAGES} in parallel; {@link #isReady()} returns
+     * true once they have all finished or the warm up timeout has failed the ones which have not
+     */
+    public void warmUp(final CommandsResource commandsResource) {
+        final long start = System.currentTimeMillis();
+        final AtomicInteger pending = new AtomicInteger(WARM_UP_STAGES.size());
+        final AtomicBoolean finished = new AtomicBoolean();
+        final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(WARM_UP_STAGES.size() + 1, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "forge-warm-up-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (final String stage : WARM_UP_STAGES) {
+            stageStatuses.put(stage, "pending");
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long stageStart = System.currentTimeMillis();
+                    try {
+                        runWarmUpStage(stage, commandsResource);
+                        long millis = System.currentTimeMillis() - stageStart;
+                        stageStatuses.put(stage, "completed in " + millis + " millis");
+                        LOG.info("Warm up stage " + stage + " completed in " + millis + " millis");
+                    } catch (Throwable e) {
+                        long millis = System.currentTimeMillis() - stageStart;
+                        stageStatuses.put(stage, "failed after " + millis + " millis: " + e);
+                        LOG.warn("Warm up stage " + stage + " failed after " + millis + " millis: " + e, e);
+                    } finally {
+                        if (pending.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+                            finishWarmUp(start, executorService);
+                        }
+                    }
+                }
+            });
+        }
+        executorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (finished.compareAndSet(false, true)) {
+                    for (String stage : WARM_UP_STAGES) {
+                        if (stageStatuses.replace(stage, "pending", "failed: timed out after " + warmUpTimeoutSeconds + " seconds")) {
+                            LOG.warn("Warm up stage " + stage + " timed out after " + warmUpTimeoutSeconds + " seconds");
+                        }
+                    }
+                    finishWarmUp(start, executorService);
+                }
+            }
+        }, warmUpTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Marks forge as ready once every stage has finished or timed out; interrupting any stage which is still running
+     */
+    protected void finishWarmUp(long start, ScheduledExecutorService executorService) {
+        // a failed stage only means the first users pay for it so lets not stay unready
+        ready = true;
+        LOG.info("Warm up completed in " + (System.currentTimeMillis() - start) + " millis");
+        logStartupFootprint();
+        executorService.shutdownNow();
+        if (trainingRun) {
+            // -XX:ArchiveClassesAtExit dumps the classes loaded so far when the JVM exits
+            LOG.info("Exiting after the class data sharing training run");
+            System.exit(0);
+        }
+    }
+
+    protected void runWarmUpStage(String stage, CommandsResource commandsResource) throws Exception {
+        if (STAGE_COMMANDS.equals(stage)) {
+            preloadCommands(commandsResource);
+        } else if (STAGE_ARCHETYPES.equals(stage)) {
+            // moving on to the archetype page loads the archetype catalog
+            validateNewProject(commandsResource, true);
+        } else if (STAGE_VALIDATE.equals(stage)) {
+            validateNewProject(commandsResource, false);
+        }
+    }
+
+    /**
+     * Validates the new project wizard against a temporary folder; including the archetype page if required
+     */
+    protected void validateNewProject(CommandsResource commandsResource, boolean archetypePage) throws Exception {
+        File tempDir = java.nio.file.Files.createTempDirectory("forgeWarmUp").toFile();
+        try {
+            Map<String, String> step1Inputs = new HashMap<>();
+            step1Inputs.put("buildSystem", "Maven");
+            step1Inputs.put("named", "warmup");
+            step1Inputs.put("targetLocation", tempDir.getAbsolutePath());
+            step1Inputs.put("topLevelPackage", "org.example");
+            step1Inputs.put("version", "1.0.0-SNAPSHOT");
+            List<Map<String, String>> inputList = new ArrayList<>();
+            inputList.add(step1Inputs);
+            if (archetypePage) {
+                step1Inputs.put("type", "From Archetype Catalog");
+                Map<String, String> step2Inputs = new HashMap<>();
+                step2Inputs.put("catalog", "fabric8");
+                step2Inputs.put("archetype", "io.fabric8.archetypes:java-camel-cdi-archetype:" + getArchetypesVersion());
+                inputList.add(step2Inputs);
+            }
+            ExecutionRequest executionRequest = new ExecutionRequest();
+            executionRequest.setInputList(inputList);
+            executionRequest.setWizardStep(inputList.size());
+            Response response = commandsResource.doValidate("project-new", executionRequest, null, commandsResource.createUIContext(tempDir));
+            dumpResult(response);
+            Object entity = response.getEntity();
+            if (entity instanceof ValidationResult) {
+                // the wizard session would keep its context on the temporary folder open until it is idle
+                executionRequest.setWizardSession(((ValidationResult) entity).getWizardSession());
+                commandsResource.closeWizardSession("project-new", executionRequest, null);
+            }
+        } finally {
+            io.fabric8.utils.Files.recursiveDelete(tempDir);
+        }
+    }
+
+    /**
+     * Logs how long after the JVM started forge became ready and its resident memory; which is what the
+     * class data sharing archive of the <code>appcds</code> build profile is measured by
+     */
+    protected void logStartupFootprint() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        String rss = "unknown";
+        File status = new File("/proc/self/status");
+        if (status.isFile()) {
+            try {
+                for (String line : java.nio.file.Files.readAllLines(status.toPath(), StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        rss = line.substring("VmRSS:".length()).trim();
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to read " + status + ". " + e, e);
+            }
+        }
+        LOG.info("Ready " + uptime + " millis after the JVM started with a resident set size of " + rss);
+    }
+
+    /**
+     * Returns true once the warm up has finished
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the status of each warm up stage
+     */
+    public Map<String, String> getStageStatuses() {
+        Map<String, String> answer = new LinkedHashMap<>();
+        for (String stage : WARM_UP_STAGES) {
+            String status = stageStatuses.get(stage);
+            if (status != null) {
+                answer.put(stage, status);
+            }
+        }
+        return answer;
     }
 
     public void preloadCommands(CommandsResource commandsResource)  {
         LOG.info("Preloading commands");
         List<CommandInfoDTO> commands = Collections.EMPTY_LIST;
         try {
-            commands = commandsResource.getCommands();
+            commands = commandsResource.doGetCommands();
             LOG.info("Loaded " + commands.size() + " commands");
         } catch (Exception e) {
             LOG.error("Failed to preload commands! " + e, e);
@@ -20,6 +20,7 @@ import io.fabric8.forge.rest.RootResource;
 import org.apache.cxf.feature.LoggingFeature;
 import io.fabric8.forge.rest.CommandsResource;
 import io.fabric8.forge.rest.git.RepositoriesResource;
+import io.fabric8.forge.rest.git.WebhooksResource;
 
 import javax.inject.Inject;
 import javax.ws.rs.ApplicationPath;
@@ -42,13 +43,16 @@ public class ForgeRestApplication extends Application {
     @Inject
     RepositoriesResource repositoriesResource;
 
+    @Inject
+    WebhooksResource webhooksResource;
+
     private boolean preloaded = false;
 
     @Override
     public Set<Object> getSingletons() {
         if (!preloaded) {
             preloaded = true;
-            forgeInitialiser.preloadCommands(commandsResource);
+            forgeInitialiser.warmUp(commandsResource);
         }
 
         return new HashSet<Object>(
@@ -56,6 +60,7 @@ public class ForgeRestApplication extends Application {
                         rootResource,
                         commandsResource,
                         repositoriesResource,
+                        webhooksResource,
                         new JacksonJsonProvider(),
 /*
                         new SwaggerFeature(),
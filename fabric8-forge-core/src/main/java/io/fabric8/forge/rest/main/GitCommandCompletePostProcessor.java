@@ -17,6 +17,8 @@ package io.fabric8.forge.rest.main;
 
 import io.fabric8.forge.rest.dto.ExecutionRequest;
 import io.fabric8.forge.rest.dto.ExecutionResult;
+import io.fabric8.forge.rest.git.RepositoryEvent;
+import io.fabric8.forge.rest.git.RepositoryEvents;
 import io.fabric8.forge.rest.hooks.CommandCompletePostProcessor;
 import io.fabric8.forge.rest.ui.RestUIContext;
 import io.fabric8.kubernetes.api.Controller;
@@ -32,6 +34,8 @@ import io.fabric8.utils.IOHelpers;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.InitCommand;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.jboss.forge.addon.ui.controller.CommandController;
 import org.jboss.forge.furnace.util.Strings;
@@ -63,18 +67,21 @@ public class GitCommandCompletePostProcessor implements CommandCompletePostProce
     private final ProjectFileSystem projectFileSystem;
     private final String jenkinsSeedJob;
     private final boolean createOpenShiftBuildResources;
+    private final RepositoryEvents repositoryEvents;
 
     @Inject
     public GitCommandCompletePostProcessor(KubernetesClient kubernetes,
                                            GitUserHelper gitUserHelper,
                                            ProjectFileSystem projectFileSystem,
                                            @ConfigProperty(name = "JENKINS_SEED_JOB", defaultValue = DEFAULT_JENKINS_SEED_JOB) String jenkinsSeedJob,
-                                           @ConfigProperty(name = "OPENSHIFT_CREATE_BUILD_ON_PROJECT_CREATE", defaultValue = "false") boolean createOpenShiftBuildResources) {
+                                           @ConfigProperty(name = "OPENSHIFT_CREATE_BUILD_ON_PROJECT_CREATE", defaultValue = "false") boolean createOpenShiftBuildResources,
+                                           RepositoryEvents repositoryEvents) {
         this.kubernetes = kubernetes;
         this.gitUserHelper = gitUserHelper;
         this.projectFileSystem = projectFileSystem;
         this.jenkinsSeedJob = jenkinsSeedJob;
         this.createOpenShiftBuildResources = createOpenShiftBuildResources;
+        this.repositoryEvents = repositoryEvents;
     }
 
     @Override
@@ -105,11 +112,10 @@ public class GitCommandCompletePostProcessor implements CommandCompletePostProce
 
 
     @Override
-    public void firePostCompleteActions(String name, ExecutionRequest executionRequest, RestUIContext context, CommandController controller, ExecutionResult results, HttpServletRequest request) {
-        UserDetails userDetails = gitUserHelper.createUserDetails(request);
-
+    public void firePostCompleteActions(String name, ExecutionRequest executionRequest, RestUIContext context, CommandController controller, ExecutionResult results, UserDetails userDetails) {
         String user = userDetails.getUser();
-        String address = userDetails.getAddress();
+        // the user details address may have been replaced by the clone URL of the project
+        String address = gitUserHelper.getAddress();
         String internalAddress = userDetails.getInternalAddress();
         String branch = userDetails.getBranch();
         String origin = projectFileSystem.getRemote();
@@ -179,6 +185,11 @@ public class GitCommandCompletePostProcessor implements CommandCompletePostProce
                         String message = ExecutionRequest.createCommitMessage(name, executionRequest);
                         LOG.info("Commiting and pushing to: " + remoteUrl + " and remote name " + origin);
                         GitHelpers.doAddCommitAndPushFiles(git, userDetails, personIdent, branch, origin, message, isPushOnCommit());
+                        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+                        if (head != null) {
+                            repositoryEvents.fireEvent(new RepositoryEvent(RepositoryEvent.Type.COMMITTED, RepositoryEvents.getRepositoryKey(remoteUrl),
+                                    git.getRepository().getDirectory(), branch, head.getName()));
+                        }
 
                         String namespace = firstNotBlank(context.getProjectName(), executionRequest.getNamespace());
                         String projectName = firstNotBlank(named, context.getProjectName(), executionRequest.getProjectName());
@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import io.fabric8.utils.Strings;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Configures how JGit accesses pack files; the window cache and delta base cache are shared by all the
+ * repositories so they should be sized for the working set of cached clones and the memory limit of the pod.
+ * <p/>
+ * Sizes can use a <code>k</code>, <code>m</code> or <code>g</code> suffix. The defaults are the JGit defaults.
+ */
+@Singleton
+public class GitStorageProfile {
+    private static final transient Logger LOG = LoggerFactory.getLogger(GitStorageProfile.class);
+
+    private final long packedGitLimit;
+    private final int packedGitWindowSize;
+    private final int packedGitOpenFiles;
+    private final boolean packedGitMMAP;
+    private final int deltaBaseCacheLimit;
+    private final int streamFileThreshold;
+
+    @Inject
+    public GitStorageProfile(@ConfigProperty(name = "JGIT_PACKED_GIT_LIMIT", defaultValue = "10m") String packedGitLimit,
+                             @ConfigProperty(name = "JGIT_PACKED_GIT_WINDOW_SIZE", defaultValue = "8k") String packedGitWindowSize,
+                             @ConfigProperty(name = "JGIT_PACKED_GIT_OPEN_FILES", defaultValue = "128") int packedGitOpenFiles,
+                             @ConfigProperty(name = "JGIT_PACKED_GIT_MMAP", defaultValue = "false") boolean packedGitMMAP,
+                             @ConfigProperty(name = "JGIT_DELTA_BASE_CACHE_LIMIT", defaultValue = "10m") String deltaBaseCacheLimit,
+                             @ConfigProperty(name = "JGIT_STREAM_FILE_THRESHOLD", defaultValue = "50m") String streamFileThreshold) {
+        this(parseSize(packedGitLimit), parseIntSize("JGIT_PACKED_GIT_WINDOW_SIZE", packedGitWindowSize), packedGitOpenFiles, packedGitMMAP,
+                parseIntSize("JGIT_DELTA_BASE_CACHE_LIMIT", deltaBaseCacheLimit), parseIntSize("JGIT_STREAM_FILE_THRESHOLD", streamFileThreshold));
+    }
+
+    public GitStorageProfile(long packedGitLimit, int packedGitWindowSize, int packedGitOpenFiles, boolean packedGitMMAP, int deltaBaseCacheLimit, int streamFileThreshold) {
+        this.packedGitLimit = packedGitLimit;
+        this.packedGitWindowSize = packedGitWindowSize;
+        this.packedGitOpenFiles = packedGitOpenFiles;
+        this.packedGitMMAP = packedGitMMAP;
+        this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+        this.streamFileThreshold = streamFileThreshold;
+    }
+
+    /**
+     * Installs this profile as the JGit window cache configuration of this JVM
+     */
+    public void install() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(packedGitLimit);
+        config.setPackedGitWindowSize(packedGitWindowSize);
+        config.setPackedGitOpenFiles(packedGitOpenFiles);
+        config.setPackedGitMMAP(packedGitMMAP);
+        config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        config.setStreamFileThreshold(streamFileThreshold);
+        config.install();
+        LOG.info("Using JGit storage profile " + this);
+    }
+
+    @Override
+    public String toString() {
+        return "GitStorageProfile{" +
+                "packedGitLimit=" + packedGitLimit +
+                ", packedGitWindowSize=" + packedGitWindowSize +
+                ", packedGitOpenFiles=" + packedGitOpenFiles +
+                ", packedGitMMAP=" + packedGitMMAP +
+                ", deltaBaseCacheLimit=" + deltaBaseCacheLimit +
+                ", streamFileThreshold=" + streamFileThreshold +
+                '}';
+    }
+
+    /**
+     * Parses a size in bytes such as <code>8192</code>, <code>8k</code>, <code>64m</code> or <code>1g</code>
+     */
+    public static long parseSize(String text) {
+        if (Strings.isNullOrBlank(text)) {
+            throw new IllegalArgumentException("No size specified");
+        }
+        String value = text.trim().toLowerCase();
+        long multiplier = 1;
+        char unit = value.charAt(value.length() - 1);
+        if (unit == 'k') {
+            multiplier = 1024;
+        } else if (unit == 'm') {
+            multiplier = 1024 * 1024;
+        } else if (unit == 'g') {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        return Long.parseLong(value) * multiplier;
+    }
+
+    /**
+     * Parses a size like {@link #parseSize(String)} which JGit only accepts as an <code>int</code>
+     *
+     * @param name the name of the setting for the error message
+     * @throws IllegalArgumentException if the size is larger than {@link Integer#MAX_VALUE}
+     */
+    public static int parseIntSize(String name, String text) {
+        long answer = parseSize(text);
+        if (answer > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " of " + text + " is larger than the maximum of " + Integer.MAX_VALUE + " bytes");
+        }
+        return (int) answer;
+    }
+
+    public long getPackedGitLimit() {
+        return packedGitLimit;
+    }
+
+    public int getPackedGitWindowSize() {
+        return packedGitWindowSize;
+    }
+
+    public int getPackedGitOpenFiles() {
+        return packedGitOpenFiles;
+    }
+
+    public boolean isPackedGitMMAP() {
+        return packedGitMMAP;
+    }
+
+    public int getDeltaBaseCacheLimit() {
+        return deltaBaseCacheLimit;
+    }
+
+    public int getStreamFileThreshold() {
+        return streamFileThreshold;
+    }
+}
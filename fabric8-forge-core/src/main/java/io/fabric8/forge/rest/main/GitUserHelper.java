@@ -57,6 +57,21 @@ public class GitUserHelper {
         }
     }
 
+    /**
+     * Returns the external address of gogs
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns true if the request carries the gogs credentials of the user rather than relying on the default user
+     */
+    public static boolean hasUserCredentials(HttpServletRequest request) {
+        return request != null && (!Strings.isNullOrEmpty(request.getHeader("GogsAuthorization"))
+                || !Strings.isNullOrEmpty(request.getParameter("_gogsAuth")));
+    }
+
     public UserDetails createUserDetails(HttpServletRequest request) {
         String user = gitUser;
         String password = gitPassword;
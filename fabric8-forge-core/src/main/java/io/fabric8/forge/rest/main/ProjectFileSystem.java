@@ -15,6 +15,7 @@
  */
 package io.fabric8.forge.rest.main;
 
+import io.fabric8.forge.rest.git.RepositoryMaintenance;
 import io.fabric8.repo.git.GitRepoClient;
 import io.fabric8.repo.git.RepositoryDTO;
 import io.fabric8.utils.Files;
@@ -68,6 +69,10 @@ public class ProjectFileSystem {
         return remote;
     }
 
+    public File getRootProjectFolder() {
+        return new File(rootProjectFolder);
+    }
+
     public String getUserProjectFolderLocation(UserDetails userDetails) {
         File projectFolder = getUserProjectFolder(userDetails);
         return projectFolder.getAbsolutePath();
@@ -244,7 +249,7 @@ public class ProjectFileSystem {
             if (hasHead) {
                 // lets stash any local changes just in case..
                 try {
-                    git.stashCreate().setPerson(personIdent).setWorkingDirectoryMessage("Stash before a write").setRef("HEAD").call();
+                    git.stashCreate().setPerson(personIdent).setWorkingDirectoryMessage(RepositoryMaintenance.FORGE_STASH_MESSAGE).setRef("HEAD").call();
                 } catch (Throwable e) {
                     LOG.error("Failed to stash changes: " + e, e);
                     Throwable cause = e.getCause();
@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the completion proposals of command inputs for a short time; as the UI asks for them as the user types and
+ * completers can scan sources, query catalogs or call remote services.
+ */
+@Singleton
+public class TypeaheadCache {
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    /**
+     * @param ttlSeconds how long proposals are cached; 0 disables the cache
+     * @param maxEntries the maximum number of cached proposal lists
+     */
+    @Inject
+    public TypeaheadCache(@ConfigProperty(name = "FORGE_TYPEAHEAD_CACHE_SECONDS", defaultValue = "30") int ttlSeconds,
+                          @ConfigProperty(name = "FORGE_TYPEAHEAD_CACHE_SIZE", defaultValue = "1000") int maxEntries) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cached proposals or null if they are not cached or have expired
+     */
+    public List<Object> get(String key) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.proposals;
+    }
+
+    public void put(String key, List<Object> proposals) {
+        if (ttlMillis <= 0 || maxEntries <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.size() >= maxEntries) {
+            removeExpired(now);
+            if (cache.size() >= maxEntries) {
+                cache.clear();
+            }
+        }
+        cache.put(key, new Entry(proposals, now + ttlMillis));
+    }
+
+    protected void removeExpired(long now) {
+        Iterator<Entry> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final List<Object> proposals;
+        private final long expires;
+
+        Entry(List<Object> proposals, long expires) {
+            this.proposals = proposals;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now > expires;
+        }
+    }
+}
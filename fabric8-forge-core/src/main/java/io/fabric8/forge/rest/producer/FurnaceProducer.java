@@ -18,19 +18,48 @@ package io.fabric8.forge.rest.producer;
 import org.jboss.forge.addon.ui.command.CommandFactory;
 import org.jboss.forge.addon.ui.controller.CommandControllerFactory;
 import org.jboss.forge.furnace.Furnace;
+import org.jboss.forge.furnace.addons.Addon;
+import org.jboss.forge.furnace.addons.AddonId;
 import org.jboss.forge.furnace.addons.AddonRegistry;
+import org.jboss.forge.furnace.repositories.AddonRepository;
 import org.jboss.forge.furnace.repositories.AddonRepositoryMode;
+import org.jboss.forge.furnace.repositories.MutableAddonRepository;
 import org.jboss.forge.furnace.se.FurnaceFactory;
+import org.jboss.forge.furnace.util.Addons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Starts Furnace with the core addons; the addons of the lazy addon groups are disabled until one of their commands
+ * is first used so that they do not slow down starting up.
+ * <p/>
+ * Only the lazy addons which were enabled are disabled and they are enabled again on shutdown; the addons disabled
+ * are recorded in the addon repository so that they are enabled again on the next start if the process dies first.
+ */
 @ApplicationScoped
 public class FurnaceProducer {
+	private static final transient Logger LOG = LoggerFactory.getLogger(FurnaceProducer.class);
+	public static final String DISABLED_ADDONS_FILE_NAME = "fabric8-forge-disabled-addons.txt";
 
 	private Furnace furnace;
 
@@ -38,11 +67,36 @@ public class FurnaceProducer {
 
 	private CommandControllerFactory controllerFactory;
 
-	public void setup(File repoDir) {
+	private AddonRepository repository;
+
+	private Map<String, Set<String>> lazyAddonGroups = Collections.emptyMap();
+
+	private final Set<String> activeAddonGroups = Collections.synchronizedSet(new HashSet<String>());
+
+	private final Set<AddonId> disabledAddons = Collections.synchronizedSet(new HashSet<AddonId>());
+
+	private File disabledAddonsFile;
+
+	private int addonStartTimeoutSeconds;
+
+	/**
+	 * @param lazyAddonGroups          the names of the addons of each group which should only be started on first use
+	 * @param addonStartTimeoutSeconds how long to wait for a lazy addon group to start
+	 */
+	public void setup(File repoDir, Map<String, Set<String>> lazyAddonGroups, int addonStartTimeoutSeconds) {
+		this.lazyAddonGroups = lazyAddonGroups;
+		this.addonStartTimeoutSeconds = addonStartTimeoutSeconds;
 		furnace = FurnaceFactory.getInstance(Thread.currentThread()
 				.getContextClassLoader(), Thread.currentThread()
 				.getContextClassLoader());
-		furnace.addRepository(AddonRepositoryMode.IMMUTABLE, repoDir);
+		if (lazyAddonGroups.isEmpty()) {
+			repository = furnace.addRepository(AddonRepositoryMode.IMMUTABLE, repoDir);
+		} else {
+			// a mutable repository lets us enable the lazy addons later on
+			repository = furnace.addRepository(AddonRepositoryMode.MUTABLE, repoDir);
+			disabledAddonsFile = new File(repoDir, DISABLED_ADDONS_FILE_NAME);
+			disableLazyAddons();
+		}
 		Future<Furnace> future = furnace.startAsync();
 
 		try {
@@ -57,6 +111,181 @@ public class FurnaceProducer {
 				.getServices(CommandControllerFactory.class.getName()).get();
 	}
 
+	/**
+	 * Parses the lazy addon groups from text of the form <code>group1=addon1,addon2;group2=addon3</code>
+	 */
+	public static Map<String, Set<String>> parseAddonGroups(String text) {
+		Map<String, Set<String>> answer = new LinkedHashMap<>();
+		if (text != null) {
+			for (String group : text.split(";")) {
+				int idx = group.indexOf('=');
+				if (idx <= 0) {
+					continue;
+				}
+				Set<String> addons = new LinkedHashSet<>();
+				for (String addon : group.substring(idx + 1).split(",")) {
+					if (!addon.trim().isEmpty()) {
+						addons.add(addon.trim());
+					}
+				}
+				if (!addons.isEmpty()) {
+					answer.put(group.substring(0, idx).trim(), addons);
+				}
+			}
+		}
+		return answer;
+	}
+
+	/**
+	 * Disables the enabled addons of the lazy groups; after enabling any which a previous run disabled but did not
+	 * get to enable again. Other addons are left as they are.
+	 */
+	protected void disableLazyAddons() {
+		MutableAddonRepository mutableRepository = (MutableAddonRepository) repository;
+		Set<String> leftDisabled = readDisabledAddons();
+		for (AddonId addonId : repository.listAll()) {
+			if (leftDisabled.contains(addonId.toCoordinates())) {
+				mutableRepository.enable(addonId);
+			}
+		}
+		for (AddonId addonId : repository.listAll()) {
+			if (getAddonGroup(addonId.getName()) != null && repository.isEnabled(addonId)) {
+				disabledAddons.add(addonId);
+			}
+		}
+		// record the addons before disabling them so a crash cannot leave them disabled
+		writeDisabledAddons();
+		for (AddonId addonId : getDisabledAddons()) {
+			mutableRepository.disable(addonId);
+		}
+		LOG.info("Deferring the start of the addon groups " + lazyAddonGroups.keySet() + " until first use");
+	}
+
+	/**
+	 * Enables the lazy addons which are still disabled so the addon repository is left as it was found
+	 */
+	protected void enableDisabledAddons() {
+		MutableAddonRepository mutableRepository = (MutableAddonRepository) repository;
+		for (AddonId addonId : getDisabledAddons()) {
+			mutableRepository.enable(addonId);
+			disabledAddons.remove(addonId);
+		}
+		if (disabledAddonsFile != null && disabledAddonsFile.exists() && !disabledAddonsFile.delete()) {
+			LOG.warn("Could not delete " + disabledAddonsFile);
+		}
+	}
+
+	protected List<AddonId> getDisabledAddons() {
+		synchronized (disabledAddons) {
+			return new ArrayList<>(disabledAddons);
+		}
+	}
+
+	protected Set<String> readDisabledAddons() {
+		Set<String> answer = new HashSet<>();
+		if (disabledAddonsFile.isFile()) {
+			try {
+				for (String line : Files.readAllLines(disabledAddonsFile.toPath(), StandardCharsets.UTF_8)) {
+					if (!line.trim().isEmpty()) {
+						answer.add(line.trim());
+					}
+				}
+			} catch (IOException e) {
+				LOG.warn("Failed to read " + disabledAddonsFile + ": " + e, e);
+			}
+		}
+		return answer;
+	}
+
+	protected void writeDisabledAddons() {
+		List<String> lines = new ArrayList<>();
+		for (AddonId addonId : getDisabledAddons()) {
+			lines.add(addonId.toCoordinates());
+		}
+		try {
+			Files.write(disabledAddonsFile.toPath(), lines, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			LOG.warn("Failed to write " + disabledAddonsFile + ": " + e, e);
+		}
+	}
+
+	/**
+	 * Returns the lazy addon group of the addon name or null if the addon is started eagerly
+	 */
+	public String getAddonGroup(String addonName) {
+		for (Map.Entry<String, Set<String>> entry : lazyAddonGroups.entrySet()) {
+			if (entry.getValue().contains(addonName)) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the addon is started eagerly or its lazy addon group has been activated
+	 */
+	public boolean isAddonActive(String addonName) {
+		String group = getAddonGroup(addonName);
+		return group == null || activeAddonGroups.contains(group);
+	}
+
+	/**
+	 * Returns the names of the lazy addon groups which have been activated
+	 */
+	public Set<String> getActiveAddonGroups() {
+		synchronized (activeAddonGroups) {
+			return new TreeSet<>(activeAddonGroups);
+		}
+	}
+
+	/**
+	 * Returns true if all the lazy addon groups have been activated
+	 */
+	public boolean isAllAddonGroupsActive() {
+		return activeAddonGroups.containsAll(lazyAddonGroups.keySet());
+	}
+
+	/**
+	 * Activates every lazy addon group which has not been activated yet
+	 */
+	public void activateAllAddonGroups() {
+		for (String group : lazyAddonGroups.keySet()) {
+			activateAddonGroup(group);
+		}
+	}
+
+	/**
+	 * Enables the addons of the lazy group which were disabled on startup then waits for them to start
+	 */
+	public synchronized void activateAddonGroup(String group) {
+		Set<String> addonNames = lazyAddonGroups.get(group);
+		if (addonNames == null || activeAddonGroups.contains(group)) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		MutableAddonRepository mutableRepository = (MutableAddonRepository) repository;
+		List<AddonId> addonIds = new ArrayList<>();
+		for (AddonId addonId : getDisabledAddons()) {
+			if (addonNames.contains(addonId.getName())) {
+				mutableRepository.enable(addonId);
+				disabledAddons.remove(addonId);
+				addonIds.add(addonId);
+			}
+		}
+		writeDisabledAddons();
+		AddonRegistry addonRegistry = furnace.getAddonRegistry();
+		for (AddonId addonId : addonIds) {
+			Addon addon = addonRegistry.getAddon(addonId);
+			try {
+				Addons.waitUntilStarted(addon, addonStartTimeoutSeconds, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				LOG.warn("Failed to wait for addon " + addonId + " to start: " + e, e);
+			}
+		}
+		activeAddonGroups.add(group);
+		LOG.info("Activated addon group " + group + " with addons " + addonIds + " in " + (System.currentTimeMillis() - start) + " millis");
+	}
+
 	@Produces
 	public Furnace getFurnace() {
 		return furnace;
@@ -75,5 +304,8 @@ public class FurnaceProducer {
 	@PreDestroy
 	public void destroy() {
 		furnace.stop();
+		if (disabledAddonsFile != null) {
+			enableDisabledAddons();
+		}
 	}
 }
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AsyncResponse} for a command whose response is not sent straight back to the client; such as one whose
+ * output is streamed by a {@link CommandEventStream} or which runs as a job. Resuming it passes the response to the
+ * {@link CommandResponseListener}.
+ * <p/>
+ * Timeouts are ignored as the client does not wait for the response.
+ */
+public class CommandAsyncResponse implements AsyncResponse {
+    private final CommandResponseListener listener;
+
+    public CommandAsyncResponse(CommandResponseListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        if (listener.isDone()) {
+            return false;
+        }
+        listener.onResponse(response);
+        return true;
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        if (listener.isDone()) {
+            return false;
+        }
+        listener.onFailure(response);
+        return true;
+    }
+
+    @Override
+    public boolean cancel() {
+        return resume(new IllegalStateException("Cancelled"));
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !listener.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return listener.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return listener.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return false;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams the output of a running command to the client as server sent events; an <code>out</code> or
+ * <code>err</code> event per write followed by a closing <code>result</code> event with the
+ * {@link io.fabric8.forge.rest.dto.ExecutionResult} or an <code>error</code> event if the command failed.
+ * <p/>
+ * The events are queued and written to the async context of the request by a pool of writer threads; so no thread
+ * waits on the client while the command is quiet and a client whose queue fills up is disconnected.
+ */
+public class CommandEventStream implements CommandOutputListener, CommandResponseListener {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandEventStream.class);
+    public static final String MEDIA_TYPE = "text/event-stream";
+    // marks the end of the events; compared by identity
+    private static final String END = "";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AsyncContext asyncContext;
+    private final ExecutorService writerService;
+    private final BlockingQueue<String> events;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean completed;
+    private volatile boolean closed;
+
+    /**
+     * @param asyncContext    the async context of the request the events are written to
+     * @param writerService   the threads which write the events
+     * @param maxQueuedEvents the number of events which can be waiting to be written before the client is disconnected
+     */
+    public CommandEventStream(AsyncContext asyncContext, ExecutorService writerService, int maxQueuedEvents) {
+        this.asyncContext = asyncContext;
+        this.writerService = writerService;
+        this.events = new ArrayBlockingQueue<>(Math.max(1, maxQueuedEvents));
+    }
+
+    @Override
+    public void onOutput(String stream, String text) {
+        send(stream, text);
+    }
+
+    /**
+     * Sends the closing event for the response of the command; which is either the result entity or an error status
+     */
+    @Override
+    public void onResponse(Object response) {
+        Object entity = response;
+        int status = Response.Status.OK.getStatusCode();
+        if (response instanceof Response) {
+            entity = ((Response) response).getEntity();
+            status = ((Response) response).getStatus();
+        }
+        if (status >= 300) {
+            send("error", "{\"status\":" + status + ",\"message\":" + toJson(entity != null ? entity.toString() : null) + "}");
+        } else {
+            send("result", toJson(entity));
+        }
+        end();
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+        send("error", "{\"status\":500,\"message\":" + toJson("" + e) + "}");
+        end();
+    }
+
+    /**
+     * Returns true if the closing event has been sent or the client has gone away
+     */
+    @Override
+    public boolean isDone() {
+        return completed || closed;
+    }
+
+    /**
+     * Returns true if the client went away before the closing event
+     */
+    @Override
+    public boolean isCancelled() {
+        return closed && !completed;
+    }
+
+    /**
+     * Sends a comment to keep the connection open while the command is quiet
+     */
+    public void heartbeat() {
+        enqueue(": heartbeat\n\n");
+    }
+
+    /**
+     * Stops streaming the events and completes the response
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        events.clear();
+        try {
+            asyncContext.complete();
+        } catch (Exception e) {
+            // already completed
+        }
+    }
+
+    protected void send(String event, String data) {
+        if (completed || closed) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder("event: ").append(event).append('\n');
+        for (String line : (data != null ? data : "").split("\n", -1)) {
+            builder.append("data: ").append(line).append('\n');
+        }
+        builder.append('\n');
+        enqueue(builder.toString());
+    }
+
+    protected void end() {
+        if (!completed) {
+            completed = true;
+            enqueue(END);
+        }
+    }
+
+    protected void enqueue(String text) {
+        if (closed) {
+            return;
+        }
+        if (!events.offer(text)) {
+            LOG.info("Disconnecting the command event stream client as it has " + events.size() + " events waiting to be written");
+            close();
+            return;
+        }
+        scheduleDrain();
+    }
+
+    protected void scheduleDrain() {
+        if (closed || events.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writerService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drain();
+                    } finally {
+                        draining.set(false);
+                    }
+                    // lets pick up any events queued after the last poll
+                    scheduleDrain();
+                }
+            });
+        } catch (Exception e) {
+            // shutting down
+            draining.set(false);
+            close();
+        }
+    }
+
+    protected void drain() {
+        try {
+            PrintWriter writer = asyncContext.getResponse().getWriter();
+            String event;
+            while (!closed && (event = events.poll()) != null) {
+                if (event == END) {
+                    close();
+                    return;
+                }
+                writer.write(event);
+                writer.flush();
+                if (writer.checkError()) {
+                    LOG.debug("Client closed the command event stream");
+                    close();
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Client closed the command event stream: " + e);
+            close();
+        }
+    }
+
+    protected String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            LOG.warn("Failed to convert " + value + " to JSON. " + e, e);
+            return "null";
+        }
+    }
+}
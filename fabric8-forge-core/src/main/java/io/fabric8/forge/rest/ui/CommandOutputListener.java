@@ -0,0 +1,30 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+/**
+ * Receives the output of a command as it is written, e.g. to stream it to the client while the command runs
+ */
+public interface CommandOutputListener {
+    String OUT = "out";
+    String ERR = "err";
+
+    /**
+     * @param stream either {@link #OUT} or {@link #ERR}
+     * @param text   the text written
+     */
+    void onOutput(String stream, String text);
+}
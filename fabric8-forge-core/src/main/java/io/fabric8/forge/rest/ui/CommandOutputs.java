@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import io.fabric8.utils.Systems;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the whole output of commands whose results only include its tail for a while after the command has finished,
+ * so it can be downloaded; after which any spilled files are deleted.
+ */
+public class CommandOutputs {
+    protected static long retentionMillis = TimeUnit.MINUTES.toMillis(Long.parseLong(Systems.getEnvVarOrSystemProperty("FORGE_OUTPUT_RETENTION_MINUTES", "10")));
+
+    private static final Map<String, CommandOutput> outputs = new ConcurrentHashMap<>();
+
+    public static void register(String id, SpillableOutputStream out, SpillableOutputStream err) {
+        removeExpired();
+        outputs.put(id, new CommandOutput(out, err, System.currentTimeMillis() + retentionMillis));
+    }
+
+    /**
+     * Returns the output stream of the given name, {@link CommandOutputListener#OUT} or {@link CommandOutputListener#ERR},
+     * or null if there is no such output or it has expired
+     */
+    public static SpillableOutputStream get(String id, String stream) {
+        removeExpired();
+        CommandOutput output = outputs.get(id);
+        if (output == null) {
+            return null;
+        }
+        if (CommandOutputListener.OUT.equals(stream)) {
+            return output.out;
+        } else if (CommandOutputListener.ERR.equals(stream)) {
+            return output.err;
+        }
+        return null;
+    }
+
+    protected static void removeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<CommandOutput> iterator = outputs.values().iterator();
+        while (iterator.hasNext()) {
+            CommandOutput output = iterator.next();
+            if (now > output.expires) {
+                iterator.remove();
+                output.out.delete();
+                output.err.delete();
+            }
+        }
+    }
+
+    private static class CommandOutput {
+        private final SpillableOutputStream out;
+        private final SpillableOutputStream err;
+        private final long expires;
+
+        CommandOutput(SpillableOutputStream out, SpillableOutputStream err, long expires) {
+            this.out = out;
+            this.err = err;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+/**
+ * Receives the response of a command which is not sent straight back to the client; see {@link CommandAsyncResponse}
+ */
+public interface CommandResponseListener {
+    /**
+     * @param response the {@link javax.ws.rs.core.Response} or entity the command returned
+     */
+    void onResponse(Object response);
+
+    void onFailure(Throwable e);
+
+    /**
+     * Returns true if the response has been received or the command is no longer wanted
+     */
+    boolean isDone();
+
+    /**
+     * Returns true if the command is no longer wanted; e.g. the client has gone away or cancelled it
+     */
+    boolean isCancelled();
+}
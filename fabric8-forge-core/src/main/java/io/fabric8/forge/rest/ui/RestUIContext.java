@@ -18,6 +18,8 @@ package io.fabric8.forge.rest.ui;
 import org.jboss.forge.addon.resource.Resource;
 import org.jboss.forge.addon.ui.context.AbstractUIContext;
 import org.jboss.forge.addon.ui.context.UISelection;
+import org.jboss.forge.addon.ui.progress.DefaultUIProgressMonitor;
+import org.jboss.forge.addon.ui.progress.UIProgressMonitor;
 import org.jboss.forge.addon.ui.util.Selections;
 
 import java.io.File;
@@ -29,6 +31,8 @@ public class RestUIContext extends AbstractUIContext {
     private String projectName;
     private String cloneUrl;
     private String commitMessage;
+    private boolean retained;
+    private UIProgressMonitor progressMonitor = new DefaultUIProgressMonitor();
 
     public RestUIContext() {
         this.selection = null;
@@ -46,6 +50,13 @@ public class RestUIContext extends AbstractUIContext {
         this.cloneUrl = cloneUrl;
     }
 
+    /**
+     * Returns a new context on the same selection and project; for work done on another thread
+     */
+    public RestUIContext copy() {
+        return new RestUIContext(selection, namespace, projectName, cloneUrl);
+    }
+
     public File getInitialSelectionFile() {
         if (selection != null) {
             String fullyQualifiedName = selection.getFullyQualifiedName();
@@ -90,4 +101,38 @@ public class RestUIContext extends AbstractUIContext {
     public void setCommitMessage(String commitMessage) {
         this.commitMessage = commitMessage;
     }
+
+    /**
+     * Returns the progress monitor of the commands executed in this context; which can be cancelled to ask them to stop
+     */
+    public UIProgressMonitor getProgressMonitor() {
+        return progressMonitor;
+    }
+
+    public void setProgressMonitor(UIProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * Keeps the context open when it is closed at the end of a request; as a {@link WizardSession} still uses it
+     */
+    public void retain() {
+        this.retained = true;
+    }
+
+    /**
+     * Closes a context which was retained
+     */
+    public void release() {
+        this.retained = false;
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (!retained) {
+            super.close();
+            provider.close();
+        }
+    }
 }
@@ -15,23 +15,47 @@
  */
 package io.fabric8.forge.rest.ui;
 
+import io.fabric8.utils.Systems;
 import org.jboss.forge.addon.ui.DefaultUIDesktop;
 import org.jboss.forge.addon.ui.UIDesktop;
 import org.jboss.forge.addon.ui.UIProvider;
 import org.jboss.forge.addon.ui.output.UIOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.UUID;
 
 public class RestUIProvider implements UIProvider {
+	private static final transient Logger LOG = LoggerFactory.getLogger(RestUIProvider.class);
+
+	/**
+	 * The output kept in memory before it is spilled to a temporary file
+	 */
+	protected static int memoryThreshold = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_OUTPUT_MEMORY_BYTES", "" + 256 * 1024));
+	protected static long maxFileSize = Long.parseLong(Systems.getEnvVarOrSystemProperty("FORGE_OUTPUT_MAX_FILE_BYTES", "" + 100 * 1024 * 1024));
+	/**
+	 * The tail of the output returned in results; the rest can be downloaded via the output id
+	 */
+	protected static int maxResultBytes = Integer.parseInt(Systems.getEnvVarOrSystemProperty("FORGE_OUTPUT_RESULT_BYTES", "" + 64 * 1024));
 
 	private final UIOutput output;
-	private ByteArrayOutputStream out = new ByteArrayOutputStream();
-	private ByteArrayOutputStream err = new ByteArrayOutputStream();
+	private final SpillableOutputStream out = new SpillableOutputStream(memoryThreshold, maxFileSize, maxResultBytes);
+	private final SpillableOutputStream err = new SpillableOutputStream(memoryThreshold, maxFileSize, maxResultBytes);
 	private final String uiName = "UiProvider";
+	private volatile CommandOutputListener outputListener;
+	private String outputId;
 
 	public RestUIProvider() {
 		super();
-		this.output = new RestUIOutput(out, err);
+		this.output = new RestUIOutput(new ListeningOutputStream(out, CommandOutputListener.OUT),
+				new ListeningOutputStream(err, CommandOutputListener.ERR));
 	}
 
 	@Override
@@ -49,12 +73,65 @@ public class RestUIProvider implements UIProvider {
 		return new DefaultUIDesktop();
 	}
 
+	/**
+	 * Returns the output or its tail if it is longer than the results should include; see {@link #isTruncated()}
+	 */
 	public String getOut() {
-		return out.toString();
+		return getTail(out);
 	}
 
 	public String getErr() {
-		return err.toString();
+		return getTail(err);
+	}
+
+	/**
+	 * Returns true if {@link #getOut()} or {@link #getErr()} only return the tail of the output
+	 */
+	public boolean isTruncated() {
+		return out.isLongerThan(maxResultBytes) || err.isLongerThan(maxResultBytes);
+	}
+
+	/**
+	 * Returns the id which the whole output can be downloaded with once the context has been closed
+	 */
+	public synchronized String getOutputId() {
+		if (outputId == null) {
+			outputId = UUID.randomUUID().toString();
+		}
+		return outputId;
+	}
+
+	/**
+	 * Keeps the output for downloading if a result referred to it via its id or deletes it
+	 */
+	public synchronized void close() {
+		if (outputId != null) {
+			CommandOutputs.register(outputId, out, err);
+		} else {
+			out.delete();
+			err.delete();
+		}
+	}
+
+	protected String getTail(SpillableOutputStream stream) {
+		try {
+			return stream.getTail(maxResultBytes);
+		} catch (IOException e) {
+			LOG.warn("Failed to read command output: " + e, e);
+			return "";
+		}
+	}
+
+	public CommandOutputListener getOutputListener() {
+		return outputListener;
+	}
+
+	/**
+	 * Sets the listener notified of the output as it is written; it is still captured for {@link #getOut()}
+	 * and {@link #getErr()}
+	 */
+	public void setOutputListener(CommandOutputListener outputListener) {
+		this.outputListener = outputListener;
 	}
 
         @Override
@@ -66,4 +143,56 @@ public class RestUIProvider implements UIProvider {
         public boolean isEmbedded() {
                 return false;
         }
+
+	/**
+	 * Captures the output and passes each write on to the listener if there is one; the bytes of a character split
+	 * across writes are kept until the rest of it is written
+	 */
+	private class ListeningOutputStream extends OutputStream {
+		private final OutputStream delegate;
+		private final String stream;
+		private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private byte[] remainder = new byte[0];
+
+		ListeningOutputStream(OutputStream delegate, String stream) {
+			this.delegate = delegate;
+			this.stream = stream;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+			delegate.write(bytes, offset, length);
+			CommandOutputListener listener = outputListener;
+			if (listener != null && length > 0) {
+				String text = decode(bytes, offset, length);
+				if (text.length() > 0) {
+					listener.onOutput(stream, text);
+				}
+			}
+		}
+
+		protected String decode(byte[] bytes, int offset, int length) {
+			ByteBuffer in;
+			if (remainder.length > 0) {
+				in = ByteBuffer.allocate(remainder.length + length);
+				in.put(remainder).put(bytes, offset, length);
+				in.flip();
+			} else {
+				in = ByteBuffer.wrap(bytes, offset, length);
+			}
+			CharBuffer chars = CharBuffer.allocate((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+			decoder.decode(in, chars, false);
+			remainder = new byte[in.remaining()];
+			in.get(remainder);
+			chars.flip();
+			return chars.toString();
+		}
+	}
 }
@@ -47,6 +47,10 @@ public class RestUIRuntime implements UIRuntime
    @Override
    public UIProgressMonitor createProgressMonitor(UIContext context)
    {
+      if (context instanceof RestUIContext)
+      {
+         return ((RestUIContext) context).getProgressMonitor();
+      }
       return new DefaultUIProgressMonitor();
    }
 
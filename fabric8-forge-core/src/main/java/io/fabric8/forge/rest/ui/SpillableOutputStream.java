@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Captures output in memory up to a threshold after which it is spilled to a temporary file; so that a chatty command
+ * does not fill the heap. Output past the maximum file size is counted but discarded.
+ * <p/>
+ * The {@link #getTail(int)} view returns only the end of the output, which is kept in a ring buffer so that it is the
+ * end of the output even once it is being discarded; the output which was kept can be copied via
+ * {@link #writeTo(OutputStream)} until the stream is deleted.
+ */
+public class SpillableOutputStream extends OutputStream {
+    private final int memoryThreshold;
+    private final long maxFileSize;
+    private final int tailSize;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private byte[] tail;
+    private int tailEnd;
+    private int tailLength;
+    private File file;
+    private OutputStream fileStream;
+    private long size;
+    private long discarded;
+
+    /**
+     * @param memoryThreshold the number of bytes kept in memory before spilling to a file
+     * @param maxFileSize     the maximum number of bytes written to the file
+     * @param tailSize        the number of bytes at the end of the output kept for {@link #getTail(int)}
+     */
+    public SpillableOutputStream(int memoryThreshold, long maxFileSize, int tailSize) {
+        this.memoryThreshold = memoryThreshold;
+        this.maxFileSize = maxFileSize;
+        this.tailSize = tailSize;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        if (buffer != null && buffer.size() + length > memoryThreshold) {
+            spill();
+        }
+        if (buffer != null) {
+            buffer.write(bytes, offset, length);
+        } else {
+            int count = (int) Math.max(0, Math.min(length, maxFileSize - (size - discarded)));
+            if (count > 0) {
+                fileStream.write(bytes, offset, count);
+            }
+            discarded += length - count;
+        }
+        size += length;
+        writeTail(bytes, offset, length);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (fileStream != null) {
+            fileStream.flush();
+        }
+    }
+
+    /**
+     * Returns the number of bytes written including any which were discarded
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the output has been spilled to a file
+     */
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Returns true if the output is longer than the given number of bytes so {@link #getTail(int)} would truncate it
+     */
+    public synchronized boolean isLongerThan(int maxBytes) {
+        return size > maxBytes;
+    }
+
+    /**
+     * Returns the last <code>maxBytes</code> of the output; up to the tail size the stream was created with
+     */
+    public synchronized String getTail(int maxBytes) throws IOException {
+        int count = Math.max(0, Math.min(maxBytes, tailLength));
+        byte[] bytes = new byte[count];
+        int start = (tailEnd - count + tailSize) % Math.max(1, tailSize);
+        int firstCount = Math.min(count, tailSize - start);
+        if (count > 0) {
+            System.arraycopy(tail, start, bytes, 0, firstCount);
+            System.arraycopy(tail, 0, bytes, firstCount, count - firstCount);
+        }
+        int offset = 0;
+        if (size > bytes.length) {
+            // lets not start part way through a multi byte character
+            while (offset < bytes.length && (bytes[offset] & 0xC0) == 0x80) {
+                offset++;
+            }
+        }
+        return new String(bytes, offset, bytes.length - offset, Charset.defaultCharset());
+    }
+
+    /**
+     * Copies all the output which was kept to the given stream
+     */
+    public synchronized void writeTo(OutputStream output) throws IOException {
+        if (buffer != null) {
+            buffer.writeTo(output);
+        } else {
+            fileStream.flush();
+            try (InputStream input = new FileInputStream(file)) {
+                byte[] chunk = new byte[8192];
+                int count;
+                while ((count = input.read(chunk)) >= 0) {
+                    output.write(chunk, 0, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the memory and deletes the file if the output was spilled
+     */
+    public synchronized void delete() {
+        buffer = new ByteArrayOutputStream();
+        size = 0;
+        discarded = 0;
+        tail = null;
+        tailEnd = 0;
+        tailLength = 0;
+        if (fileStream != null) {
+            try {
+                fileStream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            fileStream = null;
+        }
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+    }
+
+    protected void writeTail(byte[] bytes, int offset, int length) {
+        if (tailSize <= 0 || length <= 0) {
+            return;
+        }
+        if (tail == null) {
+            tail = new byte[tailSize];
+        }
+        if (length > tailSize) {
+            offset += length - tailSize;
+            length = tailSize;
+        }
+        int firstCount = Math.min(length, tailSize - tailEnd);
+        System.arraycopy(bytes, offset, tail, tailEnd, firstCount);
+        System.arraycopy(bytes, offset + firstCount, tail, 0, length - firstCount);
+        tailEnd = (tailEnd + length) % tailSize;
+        tailLength = Math.min(tailSize, tailLength + length);
+    }
+
+    protected void spill() throws IOException {
+        file = File.createTempFile("forge-output", ".log");
+        fileStream = new BufferedOutputStream(new FileOutputStream(file));
+        buffer.writeTo(fileStream);
+        buffer = null;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import io.fabric8.forge.rest.dto.ExecutionRequest;
+import io.fabric8.forge.rest.dto.ValidationResult;
+import org.jboss.forge.addon.ui.command.UICommand;
+import org.jboss.forge.addon.ui.controller.WizardCommandController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The controllers of the pages of a wizard which have been initialized so far; kept between requests so that each
+ * request only has to populate and validate the page the user is on rather than replaying every previous page.
+ * <p/>
+ * A session is only used by one request at a time; see {@link WizardSessions#acquire}.
+ */
+public class WizardSession {
+    private final String id;
+    private final String commandName;
+    private final String namespace;
+    private final String projectName;
+    private final String user;
+    private final RestUIContext context;
+    private final UICommand command;
+    private final List<WizardCommandController> controllers = new ArrayList<>();
+    private final List<Map<String, String>> pageInputs = new ArrayList<>();
+    private final List<ValidationResult> pageValidations = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    public WizardSession(String id, String commandName, ExecutionRequest executionRequest, String user, RestUIContext context,
+                         UICommand command, WizardCommandController controller) {
+        this.id = id;
+        this.commandName = commandName;
+        this.namespace = executionRequest.getNamespace();
+        this.projectName = executionRequest.getProjectName();
+        this.user = user;
+        this.context = context;
+        this.command = command;
+        this.controllers.add(controller);
+    }
+
+    @Override
+    public String toString() {
+        return "WizardSession{" +
+                "id='" + id + '\'' +
+                ", commandName='" + commandName + '\'' +
+                ", namespace='" + namespace + '\'' +
+                ", projectName='" + projectName + '\'' +
+                ", pages=" + controllers.size() +
+                '}';
+    }
+
+    /**
+     * Returns true if the request is for the same command and project by the same user
+     */
+    public boolean matches(String commandName, ExecutionRequest executionRequest, String user) {
+        return Objects.equals(this.commandName, commandName) &&
+                Objects.equals(this.namespace, executionRequest.getNamespace()) &&
+                Objects.equals(this.projectName, executionRequest.getProjectName()) &&
+                Objects.equals(this.user, user);
+    }
+
+    /**
+     * Returns the index of the page the request can resume at or -1 if the inputs of the pages which have already
+     * been completed differ from those of the request; e.g. as the user went back and changed them
+     */
+    public int resumePage(List<Map<String, String>> inputList) {
+        int page = getCompletedPages();
+        if (inputList == null || inputList.size() <= page) {
+            return -1;
+        }
+        for (int i = 0; i < page; i++) {
+            if (!Objects.equals(pageInputs.get(i), inputList.get(i))) {
+                return -1;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Records the inputs of the current page when moving on to the next page
+     */
+    public void pageCompleted(Map<String, String> inputs, ValidationResult validation, WizardCommandController nextController) {
+        pageInputs.add(new HashMap<>(inputs));
+        pageValidations.add(validation);
+        controllers.add(nextController);
+    }
+
+    /**
+     * Returns the number of pages the user has moved past
+     */
+    public int getCompletedPages() {
+        return pageInputs.size();
+    }
+
+    boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    void unlock() {
+        lastAccess = System.currentTimeMillis();
+        lock.unlock();
+    }
+
+    boolean isIdle(long now, long idleMillis) {
+        return !lock.isLocked() && now - lastAccess > idleMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public RestUIContext getContext() {
+        return context;
+    }
+
+    public UICommand getCommand() {
+        return command;
+    }
+
+    public List<WizardCommandController> getControllers() {
+        return controllers;
+    }
+
+    /**
+     * Returns the validation of a completed page or null if it was not validated on its own
+     */
+    public ValidationResult getPageValidation(int page) {
+        return pageValidations.get(page);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import io.fabric8.forge.rest.dto.ExecutionRequest;
+import io.fabric8.utils.Strings;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.jboss.forge.addon.ui.command.UICommand;
+import org.jboss.forge.addon.ui.controller.WizardCommandController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link WizardSession}s of the wizards users are part way through, keyed by the token returned in the
+ * results of the validate and execute requests. Sessions which have not been used for a while are closed.
+ */
+@Singleton
+public class WizardSessions {
+    private static final transient Logger LOG = LoggerFactory.getLogger(WizardSessions.class);
+
+    private final ConcurrentMap<String, WizardSession> sessions = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private final int maxSessions;
+
+    /**
+     * @param idleMinutes how long a wizard session is kept without being used
+     * @param maxSessions the maximum number of wizard sessions; 0 disables them
+     */
+    @Inject
+    public WizardSessions(@ConfigProperty(name = "FORGE_WIZARD_SESSION_IDLE_MINUTES", defaultValue = "15") int idleMinutes,
+                          @ConfigProperty(name = "FORGE_WIZARD_MAX_SESSIONS", defaultValue = "200") int maxSessions) {
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Returns the locked session for the request or null if there is no such session, it belongs to a different
+     * command, project or user or it is in use by another request
+     */
+    public WizardSession acquire(String commandName, ExecutionRequest executionRequest, String user) {
+        evictIdleSessions();
+        String id = executionRequest.getWizardSession();
+        if (Strings.isNullOrBlank(id)) {
+            return null;
+        }
+        WizardSession session = sessions.get(id);
+        if (session == null || !session.matches(commandName, executionRequest, user)) {
+            return null;
+        }
+        if (!session.tryLock()) {
+            LOG.debug("Wizard session " + id + " is in use so replaying the wizard pages");
+            return null;
+        }
+        if (sessions.get(id) != session) {
+            // closed while we were locking it
+            session.unlock();
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Creates a new locked session for the first page of a wizard; retaining the context so it stays open
+     * after the request, or returns null if there are too many sessions
+     */
+    public WizardSession create(String commandName, ExecutionRequest executionRequest, String user, RestUIContext context,
+                                UICommand command, WizardCommandController controller) {
+        if (sessions.size() >= maxSessions) {
+            LOG.debug("Not creating a wizard session for " + commandName + " as there are already " + sessions.size());
+            return null;
+        }
+        WizardSession session = new WizardSession(UUID.randomUUID().toString(), commandName, executionRequest, user,
+                context, command, controller);
+        session.tryLock();
+        context.retain();
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Unlocks the session after a request so that the next page can use it
+     */
+    public void release(WizardSession session) {
+        session.unlock();
+    }
+
+    /**
+     * Removes and closes the session once the wizard has completed or failed
+     */
+    public void close(WizardSession session) {
+        sessions.remove(session.getId(), session);
+        try {
+            session.getContext().release();
+        } catch (Exception e) {
+            LOG.warn("Failed to close " + session + ". " + e, e);
+        }
+        session.unlock();
+    }
+
+    protected void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+        Iterator<WizardSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            WizardSession session = iterator.next();
+            if (session.isIdle(now, idleMillis) && session.tryLock()) {
+                LOG.debug("Closing idle " + session);
+                close(session);
+            }
+        }
+    }
+}
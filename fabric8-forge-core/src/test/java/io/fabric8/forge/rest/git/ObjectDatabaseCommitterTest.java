@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ObjectDatabaseCommitterTest {
+    private final PersonIdent author = new PersonIdent("test", "test@example.com");
+    private File folder;
+    private Git git;
+    private ObjectDatabaseCommitter committer;
+    private String branch;
+    private RevCommit initialCommit;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("objectDatabaseCommitterTest").toFile();
+        git = Git.init().setDirectory(folder).call();
+        writeFile("a.txt", "one");
+        git.add().addFilepattern("a.txt").call();
+        initialCommit = git.commit().setAuthor(author).setCommitter(author).setMessage("initial").call();
+        branch = git.getRepository().getBranch();
+        committer = new ObjectDatabaseCommitter(git.getRepository());
+    }
+
+    @After
+    public void tearDown() {
+        git.close();
+        io.fabric8.utils.Files.recursiveDelete(folder);
+    }
+
+    @Test
+    public void testRefreshesCheckedOutBranch() throws Exception {
+        assertThat(committer.isCheckedOut(branch)).isTrue();
+        RevCommit commit = committer.commitFile(branch, null, "a.txt", bytes("two"), author, "update", initialCommit);
+
+        committer.refreshWorkTree(Arrays.asList("a.txt"));
+        assertThat(git.getRepository().resolve(Constants.HEAD)).isEqualTo(commit.getId());
+        assertThat(readFile("a.txt")).isEqualTo("two");
+        assertThat(git.status().call().isClean()).isTrue();
+    }
+
+    @Test
+    public void testUndoCommitRemovesAddedFile() throws Exception {
+        RevCommit commit = committer.commitFile(branch, null, "b.txt", bytes("new"), author, "add", null);
+        committer.refreshWorkTree(Arrays.asList("b.txt"));
+        assertThat(readFile("b.txt")).isEqualTo("new");
+
+        assertThat(committer.undoCommit(branch, commit)).isTrue();
+        committer.refreshWorkTree(Arrays.asList("b.txt"));
+        assertThat(git.getRepository().resolve(Constants.HEAD)).isEqualTo(initialCommit.getId());
+        assertThat(new File(folder, "b.txt").exists()).isFalse();
+        assertThat(git.status().call().isClean()).isTrue();
+    }
+
+    @Test
+    public void testFastForwardsOnlyWhenBranchIsBehind() throws Exception {
+        git.branchCreate().setName("other").call();
+        RevCommit commit = committer.commitFile(branch, null, "a.txt", bytes("two"), author, "update", null);
+        committer.refreshWorkTree(Arrays.asList("a.txt"));
+
+        assertThat(committer.isCheckedOut("other")).isFalse();
+        assertThat(committer.fastForward("other", commit)).isTrue();
+        assertThat(git.getRepository().resolve("other")).isEqualTo(commit.getId());
+        assertThat(committer.fastForward(branch, initialCommit)).isFalse();
+        assertThat(git.getRepository().resolve(branch)).isEqualTo(commit.getId());
+    }
+
+    @Test
+    public void testFastForwardUpdatesWorkingCopyOfCheckedOutBranch() throws Exception {
+        git.branchCreate().setName("other").call();
+        RevCommit commit = committer.commitFile("other", null, "a.txt", bytes("two"), author, "update", null);
+
+        assertThat(committer.fastForward(branch, commit)).isTrue();
+        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+        assertThat(head).isEqualTo(commit.getId());
+        assertThat(readFile("a.txt")).isEqualTo("two");
+        assertThat(git.status().call().isClean()).isTrue();
+    }
+
+    @Test
+    public void testKeepsModeOfReplacedExecutableFile() throws Exception {
+        writeFile("mvnw", "#!/bin/sh");
+        new File(folder, "mvnw").setExecutable(true);
+        git.add().addFilepattern("mvnw").call();
+        RevCommit parent = git.commit().setAuthor(author).setCommitter(author).setMessage("add mvnw").call();
+        assertThat(getFileMode(parent, "mvnw")).isEqualTo(FileMode.EXECUTABLE_FILE);
+
+        RevCommit commit = committer.commitFile(branch, null, "mvnw", bytes("#!/bin/sh\necho"), author, "update", parent);
+        assertThat(getFileMode(commit, "mvnw")).isEqualTo(FileMode.EXECUTABLE_FILE);
+
+        commit = committer.commitFile(branch, null, "b.sh", bytes("echo"), author, "add", commit);
+        assertThat(getFileMode(commit, "b.sh")).isEqualTo(FileMode.REGULAR_FILE);
+
+        committer.refreshWorkTree(Arrays.asList("mvnw", "b.sh"));
+        assertThat(git.status().call().isClean()).isTrue();
+    }
+
+    protected FileMode getFileMode(RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(), path, commit.getTree())) {
+            return treeWalk.getFileMode(0);
+        }
+    }
+
+    protected void writeFile(String path, String text) throws IOException {
+        Files.write(new File(folder, path).toPath(), bytes(text));
+    }
+
+    protected String readFile(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(folder, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    protected static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.git;
+
+import io.fabric8.forge.rest.git.dto.RangeEditDTO;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PatchApplierTest {
+    private static final String BASE = "a\nb\nc\nd\ne\n";
+
+    @Test
+    public void testUnifiedDiffChangesLine() throws Exception {
+        String patch = "--- a/file.txt\n" +
+                "+++ b/file.txt\n" +
+                "@@ -2,3 +2,3 @@\n" +
+                " b\n" +
+                "-c\n" +
+                "+C\n" +
+                " d\n";
+        assertUnifiedDiff(BASE, patch, "a\nb\nC\nd\ne\n");
+    }
+
+    @Test
+    public void testUnifiedDiffMultipleHunks() throws Exception {
+        String patch = "@@ -1,1 +1,2 @@\n" +
+                " a\n" +
+                "+a2\n" +
+                "@@ -4,0 +5,1 @@\n" +
+                "+d2\n" +
+                "@@ -5 +6 @@\n" +
+                "-e\n" +
+                "+E\n";
+        assertUnifiedDiff(BASE, patch, "a\na2\nb\nc\nd\nd2\nE\n");
+    }
+
+    @Test
+    public void testUnifiedDiffWithoutNewLineAtEnd() throws Exception {
+        String patch = "@@ -5 +5 @@\n" +
+                "-e\n" +
+                "+e\n" +
+                "\\ No newline at end of file\n";
+        assertUnifiedDiff(BASE, patch, "a\nb\nc\nd\ne");
+    }
+
+    @Test
+    public void testUnifiedDiffKeepsCrLf() throws Exception {
+        String patch = "@@ -1,2 +1,2 @@\n" +
+                " a\r\n" +
+                "-b\r\n" +
+                "+B\r\n";
+        assertUnifiedDiff("a\r\nb\r\nc\r\n", patch, "a\r\nB\r\nc\r\n");
+    }
+
+    @Test
+    public void testUnifiedDiffMismatch() throws Exception {
+        String patch = "@@ -2 +2 @@\n" +
+                "-x\n" +
+                "+y\n";
+        assertPatchFails(PatchApplier.unifiedDiff(patch), BASE);
+        assertPatchFails(PatchApplier.unifiedDiff("not a patch"), BASE);
+    }
+
+    @Test
+    public void testRangeEdits() throws Exception {
+        PatchApplier applier = PatchApplier.rangeEdits(Arrays.asList(
+                new RangeEditDTO(4, 5, "E\n"),
+                new RangeEditDTO(1, 3, ""),
+                new RangeEditDTO(0, 0, "start\n")));
+        assertThat(toString(applier.apply(toBytes(BASE)))).isEqualTo("start\na\nd\nE\n");
+    }
+
+    @Test
+    public void testInvalidRangeEdits() throws Exception {
+        assertPatchFails(PatchApplier.rangeEdits(Arrays.asList(new RangeEditDTO(1, 3, ""), new RangeEditDTO(2, 4, ""))), BASE);
+        assertPatchFails(PatchApplier.rangeEdits(Arrays.asList(new RangeEditDTO(4, 6, ""))), BASE);
+    }
+
+    public static void assertUnifiedDiff(String base, String patch, String expected) throws Exception {
+        byte[] actual = PatchApplier.unifiedDiff(patch).apply(toBytes(base));
+        assertThat(toString(actual)).isEqualTo(expected);
+    }
+
+    public static void assertPatchFails(PatchApplier applier, String base) {
+        try {
+            byte[] actual = applier.apply(toBytes(base));
+            fail("Expected the patch to fail but got: " + toString(actual));
+        } catch (PatchApplier.PatchException e) {
+            // expected
+        }
+    }
+
+    protected static byte[] toBytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected static String toString(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
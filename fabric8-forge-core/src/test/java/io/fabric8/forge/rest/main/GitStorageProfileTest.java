@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.main;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class GitStorageProfileTest {
+
+    @Test
+    public void testParsesSizeSuffixes() throws Exception {
+        assertThat(GitStorageProfile.parseSize("8192")).isEqualTo(8192L);
+        assertThat(GitStorageProfile.parseSize("8k")).isEqualTo(8L * 1024);
+        assertThat(GitStorageProfile.parseSize(" 64M ")).isEqualTo(64L * 1024 * 1024);
+        assertThat(GitStorageProfile.parseSize("3g")).isEqualTo(3L * 1024 * 1024 * 1024);
+    }
+
+    @Test
+    public void testParsesIntSize() throws Exception {
+        assertThat(GitStorageProfile.parseIntSize("JGIT_STREAM_FILE_THRESHOLD", "1g")).isEqualTo(1024 * 1024 * 1024);
+    }
+
+    @Test
+    public void testRejectsIntSizeTooLarge() throws Exception {
+        try {
+            GitStorageProfile.parseIntSize("JGIT_STREAM_FILE_THRESHOLD", "2g");
+            fail("Expected the size to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("JGIT_STREAM_FILE_THRESHOLD");
+        }
+    }
+}
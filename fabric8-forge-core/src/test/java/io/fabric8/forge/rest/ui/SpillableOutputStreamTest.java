@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.forge.rest.ui;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class SpillableOutputStreamTest {
+
+    @Test
+    public void testKeepsSmallOutputInMemory() throws Exception {
+        SpillableOutputStream stream = new SpillableOutputStream(100, 1000, 10);
+        try {
+            write(stream, "hello\n");
+            assertThat(stream.isSpilled()).isFalse();
+            assertThat(stream.size()).isEqualTo(6);
+            assertThat(stream.isLongerThan(10)).isFalse();
+            assertThat(stream.getTail(10)).isEqualTo("hello\n");
+            assertThat(stream.getTail(3)).isEqualTo("lo\n");
+        } finally {
+            stream.delete();
+        }
+    }
+
+    @Test
+    public void testSpillsLargeOutputToFile() throws Exception {
+        SpillableOutputStream stream = new SpillableOutputStream(10, 1000, 10);
+        try {
+            write(stream, "0123456789");
+            assertThat(stream.isSpilled()).isFalse();
+            write(stream, "abcdef");
+            assertThat(stream.isSpilled()).isTrue();
+            assertThat(stream.getTail(4)).isEqualTo("cdef");
+            assertThat(stream.isLongerThan(4)).isTrue();
+            assertThat(readAll(stream)).isEqualTo("0123456789abcdef");
+        } finally {
+            stream.delete();
+        }
+        assertThat(stream.isSpilled()).isFalse();
+    }
+
+    @Test
+    public void testDiscardsOutputPastMaximumFileSize() throws Exception {
+        SpillableOutputStream stream = new SpillableOutputStream(4, 8, 10);
+        try {
+            write(stream, "012345");
+            write(stream, "6789ab");
+            assertThat(stream.size()).isEqualTo(12);
+            assertThat(readAll(stream)).isEqualTo("01234567");
+        } finally {
+            stream.delete();
+        }
+    }
+
+    @Test
+    public void testTailIsEndOfOutputPastMaximumFileSize() throws Exception {
+        SpillableOutputStream stream = new SpillableOutputStream(4, 8, 5);
+        try {
+            write(stream, "012345");
+            write(stream, "6789ab");
+            write(stream, "cd");
+            assertThat(stream.getTail(4)).isEqualTo("abcd");
+            assertThat(stream.getTail(10)).isEqualTo("9abcd");
+            write(stream, "efghijklmnop");
+            assertThat(stream.getTail(5)).isEqualTo("lmnop");
+        } finally {
+            stream.delete();
+        }
+    }
+
+    @Test
+    public void testTailDoesNotSplitCharacters() throws Exception {
+        SpillableOutputStream stream = new SpillableOutputStream(100, 1000, 10);
+        try {
+            stream.write("a\u00e9b".getBytes(StandardCharsets.UTF_8));
+            assertThat(stream.getTail(2)).isEqualTo("b");
+        } finally {
+            stream.delete();
+        }
+    }
+
+    protected static void write(SpillableOutputStream stream, String text) throws Exception {
+        stream.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static String readAll(SpillableOutputStream stream) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        stream.writeTo(buffer);
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}